@@ -5,12 +5,16 @@ import lombok.extern.log4j.Log4j2;
 
 import java.net.URLEncoder;
 import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.core.MediaType;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.ResourceAccessMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import nl.vpro.api.client.media.MediaRestClient;
 import nl.vpro.api.client.utils.Config;
@@ -22,6 +26,10 @@ import nl.vpro.domain.media.support.OwnerType;
 import nl.vpro.domain.media.update.*;
 import nl.vpro.domain.support.License;
 import nl.vpro.junit.extensions.TestMDC;
+import nl.vpro.testutils.CleanupJournal;
+import nl.vpro.testutils.FixtureChecks;
+import nl.vpro.testutils.FixturePool;
+import nl.vpro.testutils.SuiteResources;
 import nl.vpro.util.IntegerVersion;
 import nl.vpro.util.Version;
 
@@ -29,22 +37,30 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static nl.vpro.domain.media.MediaBuilder.program;
 
 /**
+ * Test classes which change {@link #MID}, {@link #MID_WITH_LOCATIONS} or {@link #ANOTHER_MID} must lock them with a {@link ResourceLock}. If possible, they should use their own {@link #leasedMid()} in stead.
+ *
  * @author Michiel Meeuwissen
  * @since 1.0
  */
 @Log4j2
 @Timeout(value = 15, unit = TimeUnit.MINUTES)
+@ResourceLock(value = AbstractApiMediaBackendTest.BACKEND, mode = ResourceAccessMode.READ)
 public abstract class AbstractApiMediaBackendTest extends AbstractApiTest {
 
     public static final String    MID                = "WO_VPRO_025057";
-    protected static final String MID_WITH_LOCATIONS = "WO_VPRO_025700";
-    protected static final String ANOTHER_MID        = "WO_VPRO_4911154";
+    public static final String    MID_WITH_LOCATIONS = "WO_VPRO_025700";
+    public static final String    ANOTHER_MID        = "WO_VPRO_4911154";
+
+    /**
+     * Key for a {@link ResourceLock} on the settings of the shared {@link #backend} (validate input, lookup and stealing of crids, image meta data...). Test classes that change them need to lock it with {@link ResourceAccessMode#READ_WRITE}. They are reset before every test.
+     */
+    public static final String BACKEND = "backend-client";
 
     private static final Duration BACKEND_SOCKET_TIMEOUT = Duration.ofSeconds(300);
     private static final Duration BACKEND_CONNECTIONREQUEST_TIMEOUT = Duration.ofSeconds(10);
 
 
-    protected static final MediaRestClient backend =
+    protected static final MediaRestClient backend = SuiteResources.register("backend",
         MediaRestClient.configured(CONFIG.env(), CONFIG.getProperties(Config.Prefix.npo_backend_api))
             .followMerges(true)
             .validateInput(true)
@@ -53,10 +69,11 @@ public abstract class AbstractApiMediaBackendTest extends AbstractApiTest {
             .connectionRequestTimeout(BACKEND_CONNECTIONREQUEST_TIMEOUT)
             .warnThreshold(Duration.ofSeconds(10))
             //.version("5.7")
-            .build();
+            .build()
+    );
 
 
-    protected static final MediaRestClient backend_authority  =
+    protected static final MediaRestClient backend_authority = SuiteResources.register("backend_authority",
         MediaRestClient.configured(CONFIG.env(), CONFIG.getProperties(Config.Prefix.npo_backend_api))
             .followMerges(true)
             .validateInput(true)
@@ -66,7 +83,22 @@ public abstract class AbstractApiMediaBackendTest extends AbstractApiTest {
             .connectionRequestTimeout(BACKEND_CONNECTIONREQUEST_TIMEOUT)
             .warnThreshold(Duration.ofSeconds(10))
             //.version("5.7")
-            .build();
+            .build()
+    );
+    /**
+     * Kind of the {@link #GARBAGE} entries for media objects
+     */
+    protected static final String MEDIA = "media";
+
+    /**
+     * Objects created by tests, which are cleaned up in the background. See {@link #toCleanUp(String)}.
+     */
+    protected static final CleanupJournal GARBAGE = SuiteResources.register("garbage",
+        new CleanupJournal("garbage-" + CONFIG.env())
+            // the frontend probe may still see the object, or never have seen it at all. The backend knows
+            .register(MEDIA, mid -> backend.delete(mid), mid -> backend.optional(mid).map(u -> u.isDeleted()).orElse(true))
+    );
+
     private static final String backendVersion = backend.getVersion();
     protected static IntegerVersion backendVersionNumber;
 
@@ -81,6 +113,33 @@ public abstract class AbstractApiMediaBackendTest extends AbstractApiTest {
         log.info("Using {} ({} -> {})", backend, backendVersion, backendVersionNumber);
     }
 
+    /**
+     * Clips which test classes can use in stead of the shared {@link #MID}. See {@link #leasedMid()}.
+     */
+    protected static final FixturePool FIXTURES = new FixturePool("clips-" + CONFIG.env(),
+        Integer.getInteger("functional-tests.fixtures", 4),
+        AbstractApiMediaBackendTest::createFixture,
+        mid -> backend.get(mid) != null,
+        AbstractApiMediaBackendTest::resetFixture
+    );
+
+    private static final Map<Class<?>, String> LEASED = new ConcurrentHashMap<>();
+
+    /**
+     * @return A clip which is only used by this test class. It is returned to the {@link #FIXTURES pool} after all its tests ran.
+     */
+    protected String leasedMid() {
+        return LEASED.computeIfAbsent(getClass(), c -> FIXTURES.lease(c.getSimpleName()));
+    }
+
+    /**
+     * Records a newly created media object in {@link #GARBAGE}, so that it is deleted after the run (or when it is {@link CleanupJournal#dispose(String, String) disposed}).
+     * @return The mid
+     */
+    protected static String toCleanUp(String mid) {
+        return GARBAGE.record(MEDIA, mid);
+    }
+
     @SneakyThrows
     protected Image createImage() {
         Image image = new Image(OwnerType.BROADCASTER, ImageType.PICTURE, title);
@@ -113,95 +172,152 @@ public abstract class AbstractApiMediaBackendTest extends AbstractApiTest {
 
     }
 
+    /**
+     * Most waits in backend tests are until the backend processed a change.
+     */
+    @Override
+    protected String waitCategory() {
+        return MEDIA_BACKEND;
+    }
+
     @BeforeEach
     public void abstractSetUp() {
         backend.setValidateInput(true);
         backend.setStealCrids(AssemblageConfig.Steal.IF_DELETED);
         backend.setLookupCrids(true);
+        backend.setImageMetaData(false);
         backend.setAccept(MediaType.APPLICATION_XML_TYPE); // e.g. subtitels are more completely represented in XML (including metadata like last modified and creation dates)
     }
 
+    /**
+     * The shared fixtures {@link #MID}, {@link #MID_WITH_LOCATIONS} and {@link #ANOTHER_MID} are checked (and repaired) only once per run. A test class which damages one of them can {@link #markDirty(String) mark it dirty}.
+     */
+    private static final FixtureChecks FIXTURE_CHECKS = new FixtureChecks("mids-" + CONFIG.env())
+        .add(MID, AbstractApiMediaBackendTest::checkMid)
+        .add(MID_WITH_LOCATIONS, AbstractApiMediaBackendTest::checkMidWithLocations)
+        .add(ANOTHER_MID, AbstractApiMediaBackendTest::checkAnotherMid);
+
     @BeforeAll
     public static void checkMids() {
-        try {
-            {
-                MediaUpdate<?> mediaUpdate = backend.get(MID);
-                boolean needSet = false;
-                if (mediaUpdate == null) {
-                    log.info("No media found {}.  Now creating", MID);
-                    mediaUpdate = ProgramUpdate.create();
-                    ((ProgramUpdate) mediaUpdate).setType(ProgramType.CLIP);
-                    mediaUpdate.setAVType(AVType.MIXED);
-                    mediaUpdate.setMid(MID);
-                    mediaUpdate.setAgeRating(AgeRating.ALL);
-                    needSet = true;
-                }
-                if (! mediaUpdate.getBroadcasters().contains("VPRO")) {
-                    mediaUpdate.setBroadcasters("VPRO");
-                    needSet = true;
-                }
-                if (!Objects.equals(mediaUpdate.getMainTitle(), "testclip michiel")) {
-                    mediaUpdate.setMainTitle("testclip michiel");
-                    needSet = true;
-
-                }
-                if (needSet) {
-                    backend.set(mediaUpdate);
-                }
-            }
-            {
-                MediaUpdate<?> mediaUpdate = backend.get(MID_WITH_LOCATIONS);
-                if (mediaUpdate == null) {
-                    mediaUpdate = ProgramUpdate.create();
-                    ((ProgramUpdate) mediaUpdate).setType(ProgramType.CLIP);
-                    mediaUpdate.setAVType(AVType.MIXED);
-                    mediaUpdate.setBroadcasters("VPRO");
-                    mediaUpdate.setMid(MID_WITH_LOCATIONS);
-                    mediaUpdate.setMainTitle("Test");
-                    mediaUpdate.setAgeRating(AgeRating.ALL);
-
-                }
-                if (mediaUpdate.getLocations().isEmpty()) {
-                    log.info("No media found {} with locations.  Now creating", MID_WITH_LOCATIONS);
-                    mediaUpdate.setLocations(LocationUpdate.builder()
-                        .programUrl("http://content.omroep.nl/vpro/poms/world/15/04/88/63/NPO_bb.m4v")
-                        .bitrate(678000)
-                        .format(AVFileFormat.M4V)
-                        .build());
-                    backend.set(mediaUpdate);
-                } else if (mediaUpdate.getLocations().stream().allMatch(Embargo::isUnderEmbargo)) {
-                    log.info("All locations of {} are under embargo. This is incorrect. Publishing them all.", mediaUpdate);
-                    for (LocationUpdate l : mediaUpdate.getLocations()) {
-                        l.setPublishStartInstant(null);
-                        l.setPublishStopInstant(null);
-                    }
-                    backend.set(mediaUpdate);
-                }
-            }
-            ProgramUpdate anotherProgramUpdate = backend.get(ANOTHER_MID);
-            if (anotherProgramUpdate == null) {
-                log.info("No media found {}. Now creating", ANOTHER_MID);
-                log.info(
-                    backend.set(
-                        ProgramUpdate.create(program()
-                            .broadcasters("VPRO")
-                            .mid(ANOTHER_MID)
-                            .avType(AVType.VIDEO)
-                            .type(ProgramType.CLIP)
-                            .mainTitle("test"))
-                    )
-                );
+        FIXTURE_CHECKS.verify();
+    }
+
+    /**
+     * Makes sure the shared fixture is checked again before the next test class starts.
+     */
+    protected static void markDirty(String mid) {
+        FIXTURE_CHECKS.markDirty(mid);
+    }
+
+    private static void checkMid() {
+        MediaUpdate<?> mediaUpdate = backend.get(MID);
+        boolean needSet = false;
+        if (mediaUpdate == null) {
+            log.info("No media found {}.  Now creating", MID);
+            mediaUpdate = ProgramUpdate.create();
+            ((ProgramUpdate) mediaUpdate).setType(ProgramType.CLIP);
+            mediaUpdate.setAVType(AVType.MIXED);
+            mediaUpdate.setMid(MID);
+            mediaUpdate.setAgeRating(AgeRating.ALL);
+            needSet = true;
+        }
+        if (! mediaUpdate.getBroadcasters().contains("VPRO")) {
+            mediaUpdate.setBroadcasters("VPRO");
+            needSet = true;
+        }
+        if (!Objects.equals(mediaUpdate.getMainTitle(), "testclip michiel")) {
+            mediaUpdate.setMainTitle("testclip michiel");
+            needSet = true;
+
+        }
+        if (needSet) {
+            backend.set(mediaUpdate);
+        }
+    }
+
+    private static void checkMidWithLocations() {
+        MediaUpdate<?> mediaUpdate = backend.get(MID_WITH_LOCATIONS);
+        if (mediaUpdate == null) {
+            mediaUpdate = ProgramUpdate.create();
+            ((ProgramUpdate) mediaUpdate).setType(ProgramType.CLIP);
+            mediaUpdate.setAVType(AVType.MIXED);
+            mediaUpdate.setBroadcasters("VPRO");
+            mediaUpdate.setMid(MID_WITH_LOCATIONS);
+            mediaUpdate.setMainTitle("Test");
+            mediaUpdate.setAgeRating(AgeRating.ALL);
+
+        }
+        if (mediaUpdate.getLocations().isEmpty()) {
+            log.info("No media found {} with locations.  Now creating", MID_WITH_LOCATIONS);
+            mediaUpdate.setLocations(LocationUpdate.builder()
+                .programUrl("http://content.omroep.nl/vpro/poms/world/15/04/88/63/NPO_bb.m4v")
+                .bitrate(678000)
+                .format(AVFileFormat.M4V)
+                .build());
+            backend.set(mediaUpdate);
+        } else if (mediaUpdate.getLocations().stream().allMatch(Embargo::isUnderEmbargo)) {
+            log.info("All locations of {} are under embargo. This is incorrect. Publishing them all.", mediaUpdate);
+            for (LocationUpdate l : mediaUpdate.getLocations()) {
+                l.setPublishStartInstant(null);
+                l.setPublishStopInstant(null);
             }
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
+            backend.set(mediaUpdate);
+        }
+    }
+
+    private static void checkAnotherMid() {
+        ProgramUpdate anotherProgramUpdate = backend.get(ANOTHER_MID);
+        if (anotherProgramUpdate == null) {
+            log.info("No media found {}. Now creating", ANOTHER_MID);
+            log.info(
+                backend.set(
+                    ProgramUpdate.create(program()
+                        .broadcasters("VPRO")
+                        .mid(ANOTHER_MID)
+                        .avType(AVType.VIDEO)
+                        .type(ProgramType.CLIP)
+                        .mainTitle("test"))
+                )
+            );
         }
     }
 
     @AfterAll
-    static void afterAll() {
-        backend.close();
-        backend_authority.close();
+    static void releaseLeasedMid(TestInfo testInfo) {
+        testInfo.getTestClass()
+            .map(LEASED::remove)
+            .ifPresent(FIXTURES::release);
+    }
 
+    private static String createFixture() {
+        return backend.set(
+            ProgramUpdate.create(program()
+                .broadcasters("VPRO")
+                .avType(AVType.MIXED)
+                .type(ProgramType.CLIP)
+                .ageRating(AgeRating.ALL)
+                .mainTitle("fixture clip")
+            )
+        );
+    }
+
+    /**
+     * Removes everything the tests may have added to a fixture clip.
+     */
+    private static void resetFixture(String mid) {
+        ProgramUpdate update = backend.get(mid);
+        for (SegmentUpdate segment : update.getSegments()) {
+            backend.removeSegment(mid, segment.getMid());
+        }
+        update = backend.get(mid);
+        update.getImages().clear();
+        update.getLocations().clear();
+        backend.set(update);
+        ProgramUpdate authority = backend_authority.get(mid);
+        if (! authority.getImages().isEmpty()) {
+            authority.getImages().clear();
+            backend_authority.set(authority);
+        }
     }
 
     protected ImageUpdate.Builder randomImage(String title) {
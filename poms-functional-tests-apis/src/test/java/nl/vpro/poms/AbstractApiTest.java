@@ -1,27 +1,61 @@
 package nl.vpro.poms;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
+import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.core.MediaType;
 
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceAccessMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
+import nl.vpro.api.client.frontend.NpoApiAuthentication;
 import nl.vpro.api.client.frontend.NpoApiClients;
 import nl.vpro.api.client.utils.*;
 import nl.vpro.domain.api.Constants;
+import nl.vpro.domain.api.Deletes;
+import nl.vpro.domain.api.IdList;
+import nl.vpro.domain.api.MediaChange;
+import nl.vpro.domain.api.MultipleMediaResult;
+import nl.vpro.domain.api.Order;
+import nl.vpro.domain.api.SearchResultItem;
+import nl.vpro.domain.api.page.PageForm;
+import nl.vpro.domain.api.page.PageSearchResult;
+import nl.vpro.domain.api.page.PageSortField;
 import nl.vpro.domain.api.media.Compatibility;
 import nl.vpro.domain.classification.CachedURLClassificationServiceImpl;
 import nl.vpro.domain.classification.ClassificationServiceLocator;
+import nl.vpro.domain.media.MediaObject;
 import nl.vpro.domain.media.Schedule;
+import nl.vpro.domain.page.Page;
+import nl.vpro.jackson2.Jackson2Mapper;
 import nl.vpro.junit.extensions.*;
 import nl.vpro.test.jupiter.AbortOnException;
 import nl.vpro.testutils.AbstractTest;
+import nl.vpro.testutils.BatchingLoader;
+import nl.vpro.testutils.ChangeFeedAwaiter;
+import nl.vpro.testutils.ConditionalGet;
+import nl.vpro.testutils.SuiteResources;
 import nl.vpro.testutils.Utils;
+import nl.vpro.util.CloseableIterator;
 import nl.vpro.util.IntegerVersion;
 import nl.vpro.util.Version;
 
@@ -29,11 +63,17 @@ import nl.vpro.util.Version;
  * @author Michiel Meeuwissen
  * @since 1.0
  */
-@ExtendWith({AllowUnavailable.class, AllowNotImplemented.class, AbortOnException.class, TestMDC.class})
+@ExtendWith({AllowUnavailable.class, AllowNotImplemented.class, AbortOnException.class, TestMDC.class, DeadlineExtension.class, DependsOnExtension.class, HostConcurrencyLimit.class})
 @Timeout(value = 30, unit = TimeUnit.MINUTES)
 @AbortOnException.OnlyIfOrdered
+@ResourceLock(value = AbstractApiTest.CLIENTS, mode = ResourceAccessMode.READ)
 public abstract class AbstractApiTest extends AbstractTest  {
 
+    /**
+     * Key for a {@link ResourceLock} on the shared {@link #clients}. Test classes that change its settings (profile, accept, properties...) need to lock it with {@link ResourceAccessMode#READ_WRITE}.
+     */
+    public static final String CLIENTS = "npo-api-clients";
+
     protected static final String DASHES = new String(new char[100]).replace('\0', '-');
 
     public static final Config CONFIG = new Config("npo-functional-tests.properties");
@@ -48,6 +88,7 @@ public abstract class AbstractApiTest extends AbstractTest  {
     @BeforeEach
     public void setupTitle(TestInfo testInfo) {
         Utils.CLEAR_CACHES.set(this::clearCaches);
+        Utils.CATEGORY.set(waitCategory());
         title = TestMDC.getTestNumber() + ":" + NOWSTRING + " " + testInfo.getDisplayName() + " Caf\u00E9 \u6C49"; // testing encoding too!
 
         log.info("Running {} with title {}", testInfo.getTestMethod().map(Method::toString).orElse("<no method?>"), title);
@@ -73,20 +114,219 @@ public abstract class AbstractApiTest extends AbstractTest  {
         mediaUtil.clearCache();
     }
 
+    /**
+     * Invocations which get {@link NpoApiClients} as an argument talk to the frontend api.
+     */
+    @Override
+    public Optional<String> host(List<Object> arguments) {
+        if (arguments.stream().anyMatch(a -> a instanceof NpoApiClients)) {
+            return Optional.of(URI.create(NPO_API.get("baseUrl")).getHost());
+        }
+        return Optional.empty();
+    }
+
     protected static final Duration ACCEPTABLE_DURATION_FRONTEND = Duration.ofMinutes(10);
-    protected static final NpoApiClients clients =
+
+    /**
+     * {@link nl.vpro.testutils.Utils.Check#getCategory() Category} for waits until a change in the backend is visible in the frontend api.
+     */
+    protected static final String MEDIA_PUBLICATION = "media publication";
+    protected static final String SUBTITLES_PUBLICATION = "subtitles publication";
+    protected static final String PAGE_PUBLICATION = "page publication";
+    /**
+     * {@link nl.vpro.testutils.Utils.Check#getCategory() Category} for waits until a change is processed by the backend itself.
+     */
+    protected static final String MEDIA_BACKEND = "media backend";
+    protected static final String PAGE_BACKEND = "page backend";
+
+    /**
+     * The category of the waits in this test which don't specify one (see {@link Utils#CATEGORY}). By default {@code null}, meaning the test class.
+     */
+    protected String waitCategory() {
+        return null;
+    }
+    protected static final NpoApiClients clients = SuiteResources.register("npo-api",
         NpoApiClients.configured(CONFIG.env(), CONFIG.getProperties(Config.Prefix.npo_api))
             .warnThreshold(Duration.ofMillis(500))
             .connectTimeout(Duration.ofSeconds(10))
             .socketTimeout(Duration.ofSeconds(60))
             .accept(MediaType.APPLICATION_XML_TYPE)
             .properties(Constants.PROPERTIES_ALL)
-            .build();
+            .build()
+    );
+
+    /**
+     * A variant of {@link #clients} with other settings. Every variant is created only once for the whole suite (see {@link SuiteResources}), and must not be changed by tests.
+     */
+    public static NpoApiClients clientsFor(String profile, MediaType accept, String properties) {
+        final String key = "npo-api/" + profile + "/" + accept + "/" + properties;
+        return SuiteResources.get(key, () -> clients.toBuilder()
+            .profile(profile)
+            .accept(accept)
+            .properties(properties)
+            .toString((c) -> "client:" + c.getProfile() + "/" + c.getAccept() + "/" + c.getProperties())
+            .build()
+        );
+    }
+
+    /**
+     * Like {@link #clientsFor(String, MediaType, String)}, but accepting only the given language.
+     */
+    public static NpoApiClients clientsFor(String profile, MediaType accept, String properties, Locale language) {
+        final String key = "npo-api/" + profile + "/" + accept + "/" + properties + "/" + language;
+        return SuiteResources.get(key, () -> {
+            final NpoApiClients variant = clients.toBuilder()
+                .profile(profile)
+                .accept(accept)
+                .properties(properties)
+                .toString((c) -> "client:" + c.getProfile() + "/" + c.getAccept() + "/" + c.getProperties() + "/" + language)
+                .build();
+            variant.setAcceptableLanguages(Collections.singletonList(language));
+            return variant;
+        });
+    }
 
     protected static final NpoApiMediaUtil mediaUtil = new NpoApiMediaUtil(clients);
     protected static final NpoApiPageUtil pageUtil = new NpoApiPageUtil(clients);
     protected static final NpoApiImageUtil imageUtil = new NpoApiImageUtil(CONFIG.getProperties(Config.Prefix.images).get("baseUrl"));
 
+    /**
+     * Tails the media changes feed of the frontend api, so waits for changes in media objects can be woken up as soon as the object is republished.
+     */
+    protected static final ChangeFeedAwaiter mediaChanges = new ChangeFeedAwaiter("media", (since, consumer) -> {
+        try (CloseableIterator<MediaChange> changes = mediaUtil.changes(null, false, since, null, Order.ASC, 1000, Deletes.ID_ONLY)) {
+            while (changes.hasNext()) {
+                MediaChange change = changes.next();
+                if (!change.isTail()) {
+                    consumer.accept(change.getMid(), change.getPublishDate());
+                }
+            }
+        }
+    });
+
+    /**
+     * Loads of media objects in the frontend, which are coalesced with simultaneous loads of other objects into one {@code loadMultiple} call. Meant for probes in (parallel) waits.
+     */
+    protected static final BatchingLoader<String, MediaObject> mediaProbes = new BatchingLoader<>("media", mids -> {
+        MultipleMediaResult result = clients.getMediaService().loadMultiple(IdList.of(mids), null, null);
+        Map<String, MediaObject> map = new HashMap<>();
+        for (int i = 0; i < mids.size(); i++) {
+            // items are in order of the requested ids, also if redirected
+            map.put(mids.get(i), result.getItems().get(i).getResult());
+        }
+        return map;
+    });
+
+    private static final Map<String, String> NPO_API = CONFIG.getProperties(Config.Prefix.npo_api);
+
+    /**
+     * Loads media objects from the frontend with conditional requests, so unchanged objects are not downloaded and parsed again. Meant for probes in long waits on big objects. Only created if {@link #PROBE_MODE} needs it.
+     */
+    protected static ConditionalGet<MediaObject> conditionalMedia() {
+        return SuiteResources.get("conditional-media", () -> new ConditionalGet<>(
+            ClientBuilder.newClient()
+                .register(new NpoApiAuthentication(NPO_API.get("apiKey"), NPO_API.get("secret"), NPO_API.get("origin"))),
+            MediaType.APPLICATION_JSON,
+            (json) -> {
+                try {
+                    return Jackson2Mapper.getLenientInstance().readValue(json, MediaObject.class);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        ));
+    }
+
+    /**
+     * The url of the media object in the frontend api, with the same profile and properties as {@link #clients} would use
+     */
+    protected static String mediaUrl(String mid) {
+        final StringBuilder url = new StringBuilder(NPO_API.get("baseUrl"))
+            .append("/api/media/").append(encode(mid));
+        final String properties = clients.getProperties();
+        url.append("?properties=").append(encode(properties == null ? Constants.PROPERTIES_ALL : properties));
+        if (clients.getProfile() != null) {
+            url.append("&profile=").append(encode(clients.getProfile()));
+        }
+        return url.toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * How {@link #probe(String)} loads media objects. Can be set with the system property {@code functional-tests.probe}.
+     */
+    public enum ProbeMode {
+        /**
+         * Via {@link #mediaProbes}
+         */
+        batch,
+        /**
+         * Via {@link #conditionalMedia()}
+         */
+        conditional
+    }
+
+    protected static final ProbeMode PROBE_MODE = ProbeMode.valueOf(System.getProperty("functional-tests.probe", ProbeMode.batch.name()));
+
+    /**
+     * Like {@link NpoApiMediaUtil#findByMid(String)}, but via {@link #mediaProbes} or {@link #conditionalMedia()} (see {@link #PROBE_MODE}).
+     * @return The media object, or {@code null} if not found
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T extends MediaObject> T probe(String mid) {
+        switch(PROBE_MODE) {
+            case conditional:
+                return (T) conditionalMedia().get(mediaUrl(mid));
+            case batch:
+            default:
+                return (T) mediaProbes.load(mid);
+        }
+    }
+
+    /**
+     * The maximal number of pages {@link #pageChanges} reads per poll
+     */
+    private static final long MAX_PAGE_CHANGES = 2000;
+
+    /**
+     * Follows the most recently published pages in the frontend api, so waits for changes in pages can be woken up as soon as the page (identified by its url) is republished. There is no changes feed for pages, so this pages through a search sorted by {@code lastPublished}, until it reaches the pages seen in the previous poll.
+     *
+     * Only a republication of the page itself changes {@code lastPublished}. So this is no use for waits on e.g. embedded media, which may be updated without that.
+     */
+    protected static final ChangeFeedAwaiter pageChanges = new ChangeFeedAwaiter("pages", Duration.ofSeconds(5), (since, consumer) -> {
+        final PageForm form = PageForm.builder()
+            .addSortField(PageSortField.lastPublished, Order.DESC)
+            .build();
+        final Deque<Page> changed = new ArrayDeque<>();
+        long offset = 0;
+        boolean reachedSince = false;
+        while (! reachedSince && offset < MAX_PAGE_CHANGES) {
+            final PageSearchResult result = pageUtil.find(form, null, offset, 100);
+            if (result.getSize() == 0) {
+                break;
+            }
+            for (SearchResultItem<? extends Page> item : result) {
+                final Page page = item.getResult();
+                if (page.getLastPublished() == null || page.getLastPublished().isBefore(since)) {
+                    reachedSince = true;
+                    break;
+                }
+                changed.addFirst(page);
+            }
+            offset += result.getSize();
+        }
+        if (! reachedSince) {
+            LOG.warn("More than {} pages published since {}, the oldest ones are missed", MAX_PAGE_CHANGES, since);
+        }
+        // oldest first
+        for (Page page : changed) {
+            consumer.accept(page.getUrl(), page.getLastPublished());
+        }
+    });
+
     private static final String apiVersion = clients.getVersion();
     protected static IntegerVersion apiVersionNumber;
 
@@ -108,6 +348,7 @@ public abstract class AbstractApiTest extends AbstractTest  {
         LOG.info("Using {} ({}, {})", clients, apiVersion, CONFIG.env());
 
         LOG.info("Image server: {}", imageUtil);
+        LOG.info("Probing media with {}", PROBE_MODE);
     }
 
 
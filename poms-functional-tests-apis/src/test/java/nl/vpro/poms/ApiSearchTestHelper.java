@@ -22,69 +22,30 @@ import static javax.ws.rs.core.MediaType.APPLICATION_XML_TYPE;
  * @since 1.0
  */
 public class ApiSearchTestHelper {
-    private static Map<String, NpoApiClients> cache = new HashMap<>();
-
     public static <T> Stream<Arguments> getForms(NpoApiClients clients, String dir, Class<T> formClass, String... profiles) throws IOException {
-        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-        List<Map.Entry<String, T>> forms = new ArrayList<>();
-        {
-            Resource[] resources = resolver.getResources("classpath*:" + dir + "*.json");
-
-            for (Resource resource : resources) {
-                try {
-                    T form = Jackson2Mapper.getLenientInstance().readerFor(formClass).readValue(resource.getInputStream());
-                    forms.add(new AbstractMap.SimpleEntry<>(resource.getFilename(), form));
-                } catch (Exception ignored) {
-
-                }
-            }
-        }
-        {
-            Resource[] resources = resolver.getResources("classpath*:" + dir + "*.xml");
-
-            for (Resource resource : resources) {
-                try {
-                    T form = JAXB.unmarshal(resource.getInputStream(), formClass);
-                    forms.add(new AbstractMap.SimpleEntry<>(resource.getFilename(), form));
-                } catch (Exception ignored) {
-
-                }
-            }
-        }
+        List<Map.Entry<String, T>> forms = readForms(dir, formClass);
         List<Arguments> result = new ArrayList<>();
         for (MediaType mediaType : Arrays.asList(APPLICATION_XML_TYPE, APPLICATION_JSON_TYPE)) {
 
             if (profiles.length > 0) {
                 for (String profile : profiles) {
                     for (Map.Entry<String, T> e : forms) {
-                        String key = "" + profile + "/" + mediaType;
                         result.add(
                             Arguments.of(
                                 e.getKey() + "/" + profile + "/" + mediaType.getSubtype(),
                                 e.getValue(),
-                                cache.computeIfAbsent(key,
-                                    (k) -> clients.toBuilder()
-                                        .profile(profile)
-                                        .accept(mediaType)
-                                        .toString((c) -> key)
-                                        .build())
+                                AbstractApiTest.clientsFor(profile, mediaType, clients.getProperties())
                             )
                         );
                     }
                 }
             } else {
                 for (Map.Entry<String, T> e : forms) {
-                    String key = "" + mediaType;
                     result.add(
                         Arguments.of(
                             e.getKey() + "/" + mediaType.getSubtype(),
                             e.getValue(),
-                            cache.computeIfAbsent(key, (k)->
-                                clients.toBuilder()
-                                    .accept(mediaType)
-                                    .toString((c) -> key)
-                                    .build()
-                            )
+                            AbstractApiTest.clientsFor(clients.getProfile(), mediaType, clients.getProperties())
                         )
                     );
                 }
@@ -93,4 +54,38 @@ public class ApiSearchTestHelper {
 
         return result.stream();
     }
+
+    /**
+     * Reads all forms (json and xml) of the given class from the given classpath directory
+     * @return The forms, with their file names
+     */
+    public static <T> List<Map.Entry<String, T>> readForms(String dir, Class<T> formClass) throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        List<Map.Entry<String, T>> forms = new ArrayList<>();
+        {
+            Resource[] resources = resolver.getResources("classpath*:" + dir + "*.json");
+
+            for (Resource resource : resources) {
+                try {
+                    T form = Jackson2Mapper.getLenientInstance().readerFor(formClass).readValue(resource.getInputStream());
+                    forms.add(new AbstractMap.SimpleEntry<>(resource.getFilename(), form));
+                } catch (Exception ignored) {
+
+                }
+            }
+        }
+        {
+            Resource[] resources = resolver.getResources("classpath*:" + dir + "*.xml");
+
+            for (Resource resource : resources) {
+                try {
+                    T form = JAXB.unmarshal(resource.getInputStream(), formClass);
+                    forms.add(new AbstractMap.SimpleEntry<>(resource.getFilename(), form));
+                } catch (Exception ignored) {
+
+                }
+            }
+        }
+        return forms;
+    }
 }
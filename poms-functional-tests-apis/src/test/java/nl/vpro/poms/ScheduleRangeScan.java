@@ -0,0 +1,107 @@
+package nl.vpro.poms;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
+import nl.vpro.api.client.frontend.NpoApiClients;
+import nl.vpro.domain.api.ApiScheduleEvent;
+import nl.vpro.domain.api.media.ScheduleResult;
+import nl.vpro.testutils.LatencyRecorder;
+
+/**
+ * Gets the schedule of a range of guide days, like the guide pages of the apps do. Instead of calling the list calls of the schedule service one day after another, they are done for every day (and every channel, net or broadcaster) concurrently, at most {@code concurrency} at the same time. The results are merged, ordered by start (and otherwise by day and in the order the channels were given).
+ *
+ * The latency of every call is recorded in the given {@link LatencyRecorder}, both per day ({@code day <date>}) and per channel ({@code channel <channel>}, {@code net <net>}, {@code broadcaster <broadcaster>}), measured from the moment the call was submitted, so waiting for the concurrency limit is included.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class ScheduleRangeScan {
+
+    /**
+     * The maximal number of events per call, which is the maximum of the api too.
+     */
+    private static final long MAX = 240;
+
+    private final NpoApiClients clients;
+    private final int concurrency;
+    private final LatencyRecorder recorder;
+
+    public ScheduleRangeScan(NpoApiClients clients, int concurrency, LatencyRecorder recorder) {
+        this.clients = clients;
+        this.concurrency = concurrency;
+        this.recorder = recorder;
+    }
+
+    /**
+     * @param from  The first guide day
+     * @param until The guide day after the last one
+     */
+    public List<ApiScheduleEvent> broadcasters(Collection<String> broadcasters, LocalDate from, LocalDate until, String properties) {
+        return scan("broadcaster", broadcasters, from, until, (broadcaster, day) ->
+            clients.getScheduleService().listBroadcaster(broadcaster, day, null, null, properties, "ASC", 0L, MAX));
+    }
+
+    public List<ApiScheduleEvent> channels(Collection<String> channels, LocalDate from, LocalDate until, String properties) {
+        return scan("channel", channels, from, until, (channel, day) ->
+            clients.getScheduleService().listChannel(channel, day, null, null, properties, "ASC", 0L, MAX));
+    }
+
+    public List<ApiScheduleEvent> nets(Collection<String> nets, LocalDate from, LocalDate until, String properties) {
+        return scan("net", nets, from, until, (net, day) ->
+            clients.getScheduleService().listNet(net, day, null, null, properties, "ASC", 0L, MAX));
+    }
+
+    List<ApiScheduleEvent> scan(String kind, Collection<String> keys, LocalDate from, LocalDate until, BiFunction<String, LocalDate, ScheduleResult> call) {
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final List<Future<List<ApiScheduleEvent>>> futures = new ArrayList<>();
+        try {
+            for (LocalDate day = from; day.isBefore(until); day = day.plusDays(1)) {
+                for (String key : keys) {
+                    final LocalDate guideDay = day;
+                    final long submitted = System.nanoTime();
+                    futures.add(executor.submit(() -> {
+                        final long start = System.nanoTime();
+                        try {
+                            final ScheduleResult result = call.apply(key, guideDay);
+                            final long end = System.nanoTime();
+                            recorder.record("day " + guideDay, submitted, start, end);
+                            recorder.record(kind + " " + key, submitted, start, end);
+                            if (result.getSize() >= MAX) {
+                                log.warn("{} {} {}: {} events, probably more", kind, key, guideDay, result.getSize());
+                            }
+                            return result.getItems();
+                        } catch (RuntimeException e) {
+                            final long end = System.nanoTime();
+                            recorder.recordError("day " + guideDay, submitted, end);
+                            recorder.recordError(kind + " " + key, submitted, end);
+                            throw e;
+                        }
+                    }));
+                }
+            }
+            final List<ApiScheduleEvent> result = new ArrayList<>();
+            for (Future<List<ApiScheduleEvent>> future : futures) {
+                result.addAll(future.get());
+            }
+            // stable, so events with the same start stay in the order of the calls
+            result.sort(Comparator.comparing(ApiScheduleEvent::getStart));
+            return result;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -8,15 +8,19 @@ import java.util.Objects;
 import javax.ws.rs.core.Response;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
 
 import nl.vpro.domain.image.ImageType;
 import nl.vpro.domain.media.Program;
 import nl.vpro.domain.media.support.OwnerType;
 import nl.vpro.domain.media.update.*;
+import nl.vpro.junit.extensions.LifecyclePipeline;
+import nl.vpro.junit.extensions.Step;
 import nl.vpro.poms.AbstractApiMediaBackendTest;
 import nl.vpro.test.jupiter.AbortOnException;
 import nl.vpro.testutils.Utils.Check;
 
+import static nl.vpro.junit.extensions.Step.Phase.*;
 import static nl.vpro.testutils.Utils.waitUntil;
 
 /**
@@ -29,9 +33,12 @@ import static nl.vpro.testutils.Utils.waitUntil;
  * 5.7.9 @ test: 403 permission denied (we moeten hiervoor een account hebben, anders kunnen we niet testen!)
  */
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
+@DisabledIfSystemProperty(named = LifecyclePipeline.PROPERTY, matches = "true")
 @Log4j2
 public class AddFrameTest extends AbstractApiMediaBackendTest {
 
+    private final String mid = leasedMid();
+
     private static final Duration ACCEPTABLE_DURATION = Duration.ofMinutes(3);
 
     private static final Duration OFFSET = Duration.ofMinutes(10).plus(Duration.ofMinutes((int) (20f * Math.random())));
@@ -47,26 +54,28 @@ public class AddFrameTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     public void test01AddFrame() {
-        Program fullProgram = backend.getFullProgram(MID);
+        Program fullProgram = backend.getFullProgram(mid);
         if (fullProgram.getImage(ImageType.PICTURE) == null) {
             log.info("No image with type PICTURE yet present");
-            log.info(backend.addImage(randomImage(title).build(), MID));
+            log.info(backend.addImage(randomImage(title).build(), mid));
         }
         try (Response response = backend.getFrameCreatorRestService().createFrame(
-            MID, OFFSET, null, null, getClass().getResourceAsStream("/VPRO.png"))) {
+            mid, OFFSET, null, null, getClass().getResourceAsStream("/VPRO.png"))) {
             log.info("Response: {}", response);
         }
 
     }
 
     @Test
+    @Step(VERIFY)
     public void test02CheckArrived() {
         final ImageUpdate[] update = new ImageUpdate[1];
         waitUntil(ACCEPTABLE_DURATION,
-            () -> backend_authority.get(MID),
+            () -> backend_authority.get(mid),
             Check.<MediaUpdate<?>>builder()
-                .description("has " + MID)
+                .description("has " + mid)
                 .predicate(Objects::nonNull)
                 .build(),
             Check.<MediaUpdate<?>>builder()
@@ -103,17 +112,18 @@ public class AddFrameTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     public void test10Overwrite() {
 
-        try (Response response = backend.getFrameCreatorRestService().createFrame(MID, OFFSET, null, null, getClass().getResourceAsStream("/VPRO1970's.png"))) {
+        try (Response response = backend.getFrameCreatorRestService().createFrame(mid, OFFSET, null, null, getClass().getResourceAsStream("/VPRO1970's.png"))) {
             log.info("{}", response);
         }
         waitUntil(ACCEPTABLE_DURATION,
-            MID + " has STILL image with offset " + OFFSET + " and size " + ORIGINAL_SIZE_OF_IMAGE,
+            mid + " has STILL image with offset " + OFFSET + " and size " + ORIGINAL_SIZE_OF_IMAGE,
             () -> {
-                ProgramUpdate p  = backend_authority.get(MID);
+                ProgramUpdate p  = backend_authority.get(mid);
                 if (p == null) {
-                    throw new IllegalStateException("Program " + MID + " not found");
+                    throw new IllegalStateException("Program " + mid + " not found");
                 }
 
                 ImageUpdate foundImage = p.getImages()
@@ -129,7 +139,7 @@ public class AddFrameTest extends AbstractApiMediaBackendTest {
 
                 if (foundImage == null) {
                     //return false;
-                    throw new IllegalStateException("No image found for " + MID + " with offset " + OFFSET);
+                    throw new IllegalStateException("No image found for " + mid + " with offset " + OFFSET);
                 }
                 String uri = foundImage.getImageUri();
                 if (uri.equals(createImageUri)) {
@@ -146,9 +156,10 @@ public class AddFrameTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(CLEANUP)
     @AbortOnException.NoAbort
     public void test98Cleanup() {
-        ProgramUpdate update = backend_authority.get(MID);
+        ProgramUpdate update = backend_authority.get(mid);
         Assumptions.assumeTrue(update != null);
         log.info("Removing images " + update.getImages());
         update.getImages().clear();
@@ -158,16 +169,17 @@ public class AddFrameTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(CLEANUP_VERIFY)
     @AbortOnException.NoAbort
     public void test99CheckCleanup() {
          waitUntil(ACCEPTABLE_DURATION,
-            MID + " has no stills",
+            mid + " has no stills",
             () -> {
                 try {
-                    log.info("Getting full {}", MID);
+                    log.info("Getting full {}", mid);
                     ;
-                    Program p = backend.getFullProgram(MID);
-                    log.info("Found images for {}: {}", MID, p.getImages());
+                    Program p = backend.getFullProgram(mid);
+                    log.info("Found images for {}: {}", mid, p.getImages());
                     return
                         p.getImages()
                             .stream()
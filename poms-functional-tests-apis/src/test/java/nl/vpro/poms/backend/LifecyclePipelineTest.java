@@ -0,0 +1,31 @@
+package nl.vpro.poms.backend;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicNode;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import nl.vpro.junit.extensions.LifecyclePipeline;
+import nl.vpro.poms.AbstractApiMediaBackendTest;
+
+/**
+ * Runs all test classes with {@link nl.vpro.junit.extensions.Step steps} (like {@link MediaBackendImagesTest} and {@link PromoTest}) together, so that the total duration is about one publication latency per round, in stead of one per class.
+ *
+ * Use {@code -Dfunctional-tests.pipeline=true}. Those test classes are then not executed separately.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@EnabledIfSystemProperty(named = LifecyclePipeline.PROPERTY, matches = "true")
+@ResourceLock(AbstractApiMediaBackendTest.MID)
+@ResourceLock(AbstractApiMediaBackendTest.ANOTHER_MID)
+@ResourceLock(AbstractApiMediaBackendTest.BACKEND)
+class LifecyclePipelineTest {
+
+    @TestFactory
+    Stream<DynamicNode> pipeline() {
+        return new LifecyclePipeline(LifecyclePipeline.discover("nl.vpro.poms")).nodes();
+    }
+}
@@ -67,7 +67,7 @@ public class MediaBackendAddFieldValues extends AbstractApiMediaBackendTest {
         ProgramUpdate clip = ProgramUpdate.create(builder.build());
 
         //When we save the media
-        mid = backend.set(clip);
+        mid = toCleanUp(backend.set(clip));
         log.info("Found mid {}", mid);
 
         created = waitUntil(ACCEPTABLE_DURATION,
@@ -14,16 +14,21 @@ import java.util.stream.Collectors;
 import javax.xml.bind.JAXB;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import nl.vpro.api.client.media.ResponseError;
 import nl.vpro.domain.image.ImageType;
 import nl.vpro.domain.media.update.ImageUpdate;
 import nl.vpro.domain.media.update.ProgramUpdate;
+import nl.vpro.junit.extensions.LifecyclePipeline;
+import nl.vpro.junit.extensions.Step;
 import nl.vpro.logging.Log4j2OutputStream;
 import nl.vpro.poms.AbstractApiMediaBackendTest;
 import nl.vpro.test.jupiter.AbortOnException;
 import nl.vpro.util.Version;
 
+import static nl.vpro.junit.extensions.Step.Phase.*;
 import static nl.vpro.testutils.Utils.waitUntil;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assumptions.assumeThat;
@@ -45,12 +50,17 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
  * @author Michiel Meeuwissen
  */
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
+@DisabledIfSystemProperty(named = LifecyclePipeline.PROPERTY, matches = "true")
 @Log4j2
+@ResourceLock(AbstractApiMediaBackendTest.MID)
+@ResourceLock(AbstractApiMediaBackendTest.ANOTHER_MID)
+@ResourceLock(AbstractApiMediaBackendTest.BACKEND)
 public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
     private static final Duration ACCEPTABLE_DURATION = Duration.ofMinutes(3);
     private static final List<String> titles = new ArrayList<>();
 
     @Test
+    @Step(WRITE)
     @Tag("lifecycle")
     void test00setup() {
         cleanup();
@@ -58,6 +68,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(WRITE)
     void test01addRedirectingImage() {
         assumeThat(backendVersionNumber).isGreaterThanOrEqualTo(Version.of(5));
         titles.add(title);
@@ -72,6 +83,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     void test02addImage() {
         titles.add(title);
 
@@ -82,12 +94,14 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(VERIFY)
     void test10checkArrived() {
         checkArrived();
     }
 
 
     @Test
+    @Step(WRITE)
     void test11addImageToObject() {
         titles.add(title);
         ImageUpdate imageUpdate  = randomImage(title)
@@ -102,6 +116,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(VERIFY)
     void test12checkArrived() {
         // Test 11 happens via object (not via addImage), so goes via broadcaster cues.
         // If 13 is executed before 11 fully handled, 13 will fail.
@@ -113,6 +128,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
     private static String tineyeImageTitle;
 
     @Test
+    @Step(WRITE)
     @Tag("wikimedia")
     void test13addWikimediaImage() {
         titles.add(title);
@@ -135,6 +151,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
      */
 
     @Test
+    @Step(VERIFY)
     @Tag("wikimedia")
     void test14checkArrivedWikimedia() {
         checkArrived();
@@ -153,6 +170,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
      * If we upload an image without proper credits
      */
     @Test
+    @Step(WRITE)
     @Tag("tineye")
     void test15addTineyeImage() throws UnsupportedEncodingException {
         titles.add(title);
@@ -173,6 +191,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
      */
 
     @Test
+    @Step(VERIFY)
     @Tag("tineye")
     void test20checkArrived() {
         checkArrived();
@@ -188,6 +207,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     void test21updateImageInObject() {
         final ProgramUpdate[] update = new ProgramUpdate[1];
         update[0] = backend.get(MID);
@@ -220,6 +240,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(WRITE)
     void test22updateImageInObjectButCleanUrn() {
         final ProgramUpdate[] update = new ProgramUpdate[1];
         update[0] = backend.get(MID);
@@ -259,6 +280,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     void test30copyImageToOtherObject() {
         final ProgramUpdate[] updates = new ProgramUpdate[2];
         updates[0] = backend.get(MID);
@@ -298,6 +320,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     void test31addInvalidImage() {
         Assertions.assertThrows(ResponseError.class, () -> {
             assumeThat(backendVersionNumber).isGreaterThanOrEqualTo(Version.of(5, 8));
@@ -314,6 +337,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(CLEANUP)
     @Tag("lifecycle")
     @AbortOnException.NoAbort
     void test98Cleanup() {
@@ -322,6 +346,7 @@ public class MediaBackendImagesTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(CLEANUP_VERIFY)
     @Tag("lifecycle")
     @AbortOnException.NoAbort
     void test99CleanupCheck() {
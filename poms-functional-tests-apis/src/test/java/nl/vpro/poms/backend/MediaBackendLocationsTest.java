@@ -10,14 +10,18 @@ import java.util.stream.Collectors;
 import javax.xml.bind.JAXB;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
 
 import nl.vpro.domain.media.update.LocationUpdate;
 import nl.vpro.domain.media.update.ProgramUpdate;
 import nl.vpro.domain.media.update.collections.XmlCollection;
+import nl.vpro.junit.extensions.LifecyclePipeline;
+import nl.vpro.junit.extensions.Step;
 import nl.vpro.logging.Log4j2OutputStream;
 import nl.vpro.poms.AbstractApiMediaBackendTest;
 import nl.vpro.test.jupiter.AbortOnException;
 
+import static nl.vpro.junit.extensions.Step.Phase.*;
 import static nl.vpro.testutils.Utils.waitUntil;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -35,9 +39,12 @@ import static org.assertj.core.api.Assertions.assertThat;
  * @author Michiel Meeuwissen
  */
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
+@DisabledIfSystemProperty(named = LifecyclePipeline.PROPERTY, matches = "true")
 @Log4j2
 class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
 
+    private final String mid = leasedMid();
+
     private static final Duration ACCEPTABLE_DURATION = Duration.ofMinutes(3);
     private static final List<String> titles = new ArrayList<>();
 
@@ -60,23 +67,25 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     void test01addLocation() {
         titles.add(title);
         firstTitle = title;
         LocationUpdate update = LocationUpdate.builder()
             .programUrl(programUrl(firstTitle))
             .build();
-        backend.addLocationToProgram(update, MID);
+        backend.addLocationToProgram(update, mid);
     }
 
 
     @Test
+    @Step(VERIFY)
     void test10checkArrived() {
         List<String> currentLocations = new ArrayList<>();
         waitUntil(ACCEPTABLE_DURATION,
-            MID + " in backend with location " + titles,
+            mid + " in backend with location " + titles,
             () -> {
-                ProgramUpdate update = backend.get(MID);
+                ProgramUpdate update = backend.get(mid);
                 currentLocations.clear();
                 currentLocations.addAll(update.getLocations().stream().map(LocationUpdate::getProgramUrl).collect(Collectors.toList()));
                 return currentLocations.containsAll(titles.stream().map(this::programUrl).collect(Collectors.toSet()));
@@ -86,12 +95,13 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(VERIFY)
     void test11checkArrivedViaGetLocations() {
         List<String> currentLocations = new ArrayList<>();
         waitUntil(ACCEPTABLE_DURATION,
-            MID + " in backend with location " + titles,
+            mid + " in backend with location " + titles,
             () -> {
-                XmlCollection<LocationUpdate> update = backend.getBackendRestService().getLocations(null, MID, true, null);
+                XmlCollection<LocationUpdate> update = backend.getBackendRestService().getLocations(null, mid, true, null);
                 currentLocations.clear();
                 currentLocations.addAll(update.stream().map(LocationUpdate::getProgramUrl).collect(Collectors.toList()));
                 return currentLocations.containsAll(titles.stream().map(this::programUrl).collect(Collectors.toSet()));
@@ -101,25 +111,27 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(WRITE)
     void test12updateLocation() throws IOException {
         String firstLocation = programUrl(firstTitle);
         LocationUpdate update = backend.getBackendRestService()
-            .getLocations(null, MID, true, null).stream()
+            .getLocations(null, mid, true, null).stream()
             .filter(l -> l.getProgramUrl().equals(firstLocation))
             .findFirst()
-            .orElseThrow(() -> new IllegalArgumentException(MID + " has no location " + firstLocation));
+            .orElseThrow(() -> new IllegalArgumentException(mid + " has no location " + firstLocation));
 
         update.setProgramUrl(programUrl(title));
         titles.remove(firstTitle);
         titles.add(title);
 
 
-        backend.addLocationToProgram(update, MID);
+        backend.addLocationToProgram(update, mid);
     }
 
 
 
     @Test
+    @Step(WRITE)
     void test20addLocationToObject() {
         titles.add(title);
         LocationUpdate location = LocationUpdate
@@ -127,7 +139,7 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
             .programUrl(programUrl(title))
             .build();
 
-        ProgramUpdate update = backend.get(MID);
+        ProgramUpdate update = backend.get(mid);
         update.getLocations().add(location);
         backend.set(update);
         JAXB.marshal(update, Log4j2OutputStream.debug(log));
@@ -135,12 +147,13 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(VERIFY)
     void test21addLocationToObjectCheck() {
         List<String> currentLocations = new ArrayList<>();
         waitUntil(ACCEPTABLE_DURATION,
-            MID + " in backend with location " + titles,
+            mid + " in backend with location " + titles,
             () -> {
-                    XmlCollection<LocationUpdate> update = backend.getBackendRestService().getLocations(null, MID, true, null);
+                    XmlCollection<LocationUpdate> update = backend.getBackendRestService().getLocations(null, mid, true, null);
                 currentLocations.clear();
                 currentLocations.addAll(update.stream().map(LocationUpdate::getProgramUrl).collect(Collectors.toList()));
                 Set<String> exprectedLocations = titles.stream().map(this::programUrl).collect(Collectors.toSet());
@@ -151,6 +164,7 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     void test40addInvalidLocationToObject() {
         Assertions.assertThrows(Exception.class, () ->
             backend.doValidated(() -> {
@@ -159,7 +173,7 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
                     .programUrl("http:ongeldigeurl")
                     .build();
 
-                ProgramUpdate update = backend.get(MID);
+                ProgramUpdate update = backend.get(mid);
                 update.getLocations().add(location);
                 backend.set(update);
             }));
@@ -167,10 +181,11 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(CLEANUP)
     @AbortOnException.NoAbort
     void test98Cleanup() {
         backend.getBrowserCache().clear();
-        ProgramUpdate update = backend.get(MID);
+        ProgramUpdate update = backend.get(mid);
         log.info("Removing locations " + update.getLocations());
         update.getLocations().clear();
         backend.set(update);
@@ -178,12 +193,13 @@ class MediaBackendLocationsTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(CLEANUP_VERIFY)
     void test99CleanupCheck() {
         final ProgramUpdate[] update = new ProgramUpdate[1];
         waitUntil(ACCEPTABLE_DURATION,
-            MID + " has no locations any more",
+            mid + " has no locations any more",
             () -> {
-                update[0] = backend.get(MID);
+                update[0] = backend.get(mid);
                 return update[0].getLocations().isEmpty();
             });
         assertThat(update[0].getLocations()).isEmpty();
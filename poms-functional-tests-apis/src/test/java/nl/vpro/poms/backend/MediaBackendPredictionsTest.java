@@ -11,6 +11,7 @@ import java.util.Objects;
 import javax.ws.rs.core.Response;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import nl.vpro.domain.media.Encryption;
 import nl.vpro.domain.media.Platform;
@@ -30,6 +31,7 @@ import static org.assertj.core.api.Assumptions.assumeThat;
  */
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 @Log4j2
+@ResourceLock(AbstractApiMediaBackendTest.MID)
 class MediaBackendPredictionsTest extends AbstractApiMediaBackendTest {
 
     private static final Duration ACCEPTABLE_DURATION = Duration.ofMinutes(3);
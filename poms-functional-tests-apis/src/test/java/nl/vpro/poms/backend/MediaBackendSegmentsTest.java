@@ -4,18 +4,25 @@ import lombok.extern.log4j.Log4j2;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Iterator;
 
 import javax.xml.bind.JAXB;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
 
 import nl.vpro.domain.media.*;
 import nl.vpro.domain.media.update.ProgramUpdate;
 import nl.vpro.domain.media.update.SegmentUpdate;
+import nl.vpro.junit.extensions.DependsOn;
+import nl.vpro.junit.extensions.LifecyclePipeline;
+import nl.vpro.junit.extensions.Step;
 import nl.vpro.poms.AbstractApiMediaBackendTest;
 import nl.vpro.test.jupiter.AbortOnException;
+import nl.vpro.testutils.Utils.Check;
 
+import static nl.vpro.junit.extensions.Step.Phase.*;
 import static nl.vpro.testutils.Utils.waitUntil;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assumptions.assumeThat;
@@ -28,12 +35,18 @@ import static org.assertj.core.api.Assumptions.assumeThat;
 
  */
 /**
+ * The tests declare their {@link DependsOn dependencies}, so that the segment and the program with a segment are tested at the same time, and a failure of one doesn't abort the other.
+ *
  * @author Michiel Meeuwissen
  */
-@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+@TestMethodOrder(DependsOn.Orderer.class)
+@Execution(ExecutionMode.CONCURRENT)
+@DisabledIfSystemProperty(named = LifecyclePipeline.PROPERTY, matches = "true")
 @Log4j2
 class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
 
+    private final String mid = leasedMid();
+
     private static final Duration ACCEPTABLE_DURATION = Duration.ofMinutes(3);
 
     private static String segmentMid;
@@ -49,13 +62,15 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(WRITE)
+    @AbortOnException.NoAbort
     void test01createSegment() {
         segmentTitle = title;
         SegmentUpdate update = SegmentUpdate.create(
             MediaBuilder.segment()
                 .avType(AVType.VIDEO)
                 .broadcasters("VPRO")
-                .midRef(MID)
+                .midRef(mid)
                 .start(Duration.ofMillis(0))
                 .ageRating(AgeRating.ALL)
                 .mainTitle(segmentTitle));
@@ -66,6 +81,9 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(VERIFY)
+    @DependsOn("test01createSegment")
+    @AbortOnException.NoAbort
     void test02WaitFor() {
         assumeThat(segmentMid).isNotNull();
         waitUntil(ACCEPTABLE_DURATION,
@@ -81,33 +99,37 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
      * TODO: this actually checks the frontend. This is therefor not a pure backend test
      */
     @Test
+    @Step(VERIFY)
+    @DependsOn("test01createSegment")
+    @AbortOnException.NoAbort
     void test03WaitForInFrontend() {
         assumeThat(segmentMid).isNotNull();
-        Segment[] segments = new Segment[1];
-        waitUntil(ACCEPTABLE_DURATION_FRONTEND,
-            segmentMid + " in frontend and has title " + segmentTitle,
-            () -> {
-            segments[0] = mediaUtil.loadOrNull(segmentMid);
-            if (segments[0] == null) {
-                return false;
-            }
-            Instant lastPublished = segments[0].getLastPublishedInstant();
-            if (lastPublished == null) {
-                throw new IllegalStateException("The last published field of " + segments[0] + " is null!");
-            }
-            return segments[0].getMainTitle().equals(segmentTitle);
-        });
-        assertThat(segments[0])
-            .overridingErrorMessage("No segment %s found for %s", segmentMid, MID)
+        Segment segment = waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+            () -> probe(segmentMid),
+            Check.<Segment>description(segmentMid + " in frontend and has title " + segmentTitle)
+                .predicate(s -> {
+                    Instant lastPublished = s.getLastPublishedInstant();
+                    if (lastPublished == null) {
+                        throw new IllegalStateException("The last published field of " + s + " is null!");
+                    }
+                    return s.getMainTitle().equals(segmentTitle);
+                })
+                .category(MEDIA_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(segmentMid))
+        );
+        assertThat(segment)
+            .overridingErrorMessage("No segment %s found for %s", segmentMid, mid)
             .isNotNull();
-        assertThat(segments[0].getMidRef()).isEqualTo(MID);
-        assertThat(segments[0].getMainTitle()).isEqualTo(segmentTitle);
+        assertThat(segment.getMidRef()).isEqualTo(mid);
+        assertThat(segment.getMainTitle()).isEqualTo(segmentTitle);
 
 
     }
 
 
     @Test
+    @Step(WRITE)
+    @AbortOnException.NoAbort
     void test04CreateProgramWithSegment() {
 
         Segment segment =
@@ -127,11 +149,14 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
                 .segments(segment)
         );
         JAXB.marshal(update, System.out);
-        programMid = backend.set(update);
+        programMid = toCleanUp(backend.set(update));
         log.info("Created " + programMid);
     }
 
     @Test
+    @Step(VERIFY)
+    @DependsOn("test04CreateProgramWithSegment")
+    @AbortOnException.NoAbort
     void test05WaitFor() {
         assumeThat(programMid).isNotNull();
         waitUntil(ACCEPTABLE_DURATION,
@@ -143,6 +168,9 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(VERIFY)
+    @DependsOn("test05WaitFor")
+    @AbortOnException.NoAbort
     void test06CheckResult() {
         assumeThat(programMid).isNotNull();
         ProgramUpdate up = backend.get(programMid);
@@ -154,11 +182,14 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
+    @DependsOn({"test02WaitFor", "test03WaitForInFrontend"})
+    @AbortOnException.NoAbort
     void test07UpdateSegmentDirectly() {
         assumeThat(segmentMid).isNotNull();
 
         SegmentUpdate up = backend.get(segmentMid);
-        assertThat(up.getMidRef()).isEqualTo(MID);
+        assertThat(up.getMidRef()).isEqualTo(mid);
         updatedSegmentTitle = up.fetch().getMainTitle() + " -> " + title;
         up.setMainTitle(updatedSegmentTitle);
 
@@ -166,6 +197,9 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(VERIFY)
+    @DependsOn("test07UpdateSegmentDirectly")
+    @AbortOnException.NoAbort
     void test08WaitFor() {
         assumeThat(segmentMid).isNotNull();
         waitUntil(ACCEPTABLE_DURATION,
@@ -177,9 +211,12 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(WRITE)
+    @DependsOn("test08WaitFor")
+    @AbortOnException.NoAbort
     void test09UpdateSegmentViaProgram() {
         assumeThat(segmentMid).isNotNull();
-        ProgramUpdate programUpdate = backend.get(MID);
+        ProgramUpdate programUpdate = backend.get(mid);
 
         SegmentUpdate segmentUpdate = programUpdate.getSegments()
             .stream()
@@ -194,6 +231,9 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(VERIFY)
+    @DependsOn("test09UpdateSegmentViaProgram")
+    @AbortOnException.NoAbort
     void test10WaitFor() {
         assumeThat(segmentMid).isNotNull();
         waitUntil(ACCEPTABLE_DURATION,
@@ -206,22 +246,14 @@ class MediaBackendSegmentsTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(CLEANUP)
     @AbortOnException.NoAbort
+    @DependsOn(value = {"test03WaitForInFrontend", "test06CheckResult", "test10WaitFor"}, always = true)
     void test99Cleanup() {
-        Program program = backend.getFullProgram(MID);
-        assumeThat(program).isNotNull();
-        log.info("Found {} with {} segments", program, program.getSegments().size());
-        Iterator<Segment> segments = program.getSegments().iterator();
-        int count = 0;
-        while(segments.hasNext()) {
-            Segment segment = segments.next();
-            if (segment.getCreationInstant().isBefore(Instant.now().minus(Duration.ofDays(3)))) {
-                log.info("Deleting {}", segment);
-                count++;
-                backend.removeSegment(MID, segment.getMid());
-            }
+        // the segments of the leased clip are removed when the fixture is reset
+        if (programMid != null) {
+            GARBAGE.dispose(MEDIA, programMid);
         }
-        log.info("Deleted {} segments for {}", count, MID);
     }
 
 
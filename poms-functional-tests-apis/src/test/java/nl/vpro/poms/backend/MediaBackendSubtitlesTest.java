@@ -10,6 +10,7 @@ import java.util.Locale;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
@@ -40,6 +41,7 @@ import static org.assertj.core.api.Assumptions.assumeThat;
  */
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
 @Log4j2
+@ResourceLock(AbstractApiMediaBackendTest.MID)
 public class MediaBackendSubtitlesTest extends AbstractApiMediaBackendTest {
 
     private static final Duration ACCEPTABLE_DURATION = Duration.ofMinutes(3);
@@ -193,7 +195,7 @@ public class MediaBackendSubtitlesTest extends AbstractApiMediaBackendTest {
             .broadcasters("VPRO")
             .avType(AVType.VIDEO).build());
 
-        newMid = backend.set(clip);
+        newMid = toCleanUp(backend.set(clip));
 
 
         log.info("New mid {}", newMid);
@@ -235,7 +237,7 @@ public class MediaBackendSubtitlesTest extends AbstractApiMediaBackendTest {
         backend.deleteSubtitles(SubtitlesId.builder().mid(MID).language(new Locale("ar")).type(SubtitlesType.TRANSLATION).build());
         backend.deleteSubtitles(SubtitlesId.builder().mid(MID).language(Locale.CHINESE).type(SubtitlesType.TRANSLATION).build());
         if (newMid != null) {
-            backend.delete(newMid);
+            GARBAGE.dispose(MEDIA, newMid);
         }
         //Subtitles subtitles = backend.getBackendRestService().getSubtitles(MID, new Locale("ar"), SubtitlesType.TRANSLATION, null);
 
@@ -10,6 +10,7 @@ import javax.xml.bind.JAXB;
 
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import nl.vpro.api.client.media.ResponseError;
 import nl.vpro.domain.media.*;
@@ -31,6 +32,8 @@ import static org.assertj.core.api.Assumptions.assumeThat;
  */
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
 @Log4j2
+@ResourceLock(AbstractApiMediaBackendTest.MID)
+@ResourceLock(AbstractApiMediaBackendTest.BACKEND)
 class MediaBackendTest extends AbstractApiMediaBackendTest {
 
     private static final Duration ACCEPTABLE_DURATION = Duration.ofMinutes(3);
@@ -61,7 +64,7 @@ class MediaBackendTest extends AbstractApiMediaBackendTest {
         );
 
         JAXB.marshal(clip, System.out);
-        newMid = backend.set(clip);
+        newMid = toCleanUp(backend.set(clip));
         assertThat(newMid).isNotEmpty();
 
         log.info("Created {}", newMid);
@@ -75,7 +78,7 @@ class MediaBackendTest extends AbstractApiMediaBackendTest {
                     .build());
 
         // TODO: this will happen via queue in ImportRoute
-        String memberMid = backend.set(member);
+        String memberMid = toCleanUp(backend.set(member));
         log.info("Created {} too", memberMid);
 
 
@@ -151,7 +154,7 @@ class MediaBackendTest extends AbstractApiMediaBackendTest {
         );
         clip.setVersion(Version.of(5, 5));
         try {
-            String mid = backend.set(clip);
+            String mid = toCleanUp(backend.set(clip));
             log.info("Found mid {}", mid);
             //fail("Should give error on creating object without any broadcasters. But created  " + mid);
         } catch (ResponseError re) {
@@ -194,7 +197,7 @@ class MediaBackendTest extends AbstractApiMediaBackendTest {
                 .crids("crid://test.poms/1")
                 .build()
         );
-        midWithCrid = backend.set(clip);
+        midWithCrid = toCleanUp(backend.set(clip));
         log.info("Found mid {}", midWithCrid);
         ProgramUpdate created = waitUntil(ACCEPTABLE_DURATION,
             midWithCrid + " exists",
@@ -214,7 +217,7 @@ class MediaBackendTest extends AbstractApiMediaBackendTest {
                 .crids("crid://test.poms/1")
                 .build()
         );
-        againMidWithCrid = backend.set(clip);
+        againMidWithCrid = toCleanUp(backend.set(clip));
         log.info("Found another mid {}. This clip may not actually appear!", againMidWithCrid);
     }
 
@@ -232,7 +235,7 @@ class MediaBackendTest extends AbstractApiMediaBackendTest {
                 .crids("crid://test.poms/1")
                 .build()
         );
-        againMidWithStolenCrid = backend.set(clip);
+        againMidWithStolenCrid = toCleanUp(backend.set(clip));
         log.info("Found another mid {}", againMidWithStolenCrid);
         waitUntil(ACCEPTABLE_DURATION,
             CRID + " exists ",
@@ -10,6 +10,7 @@
  import javax.ws.rs.core.Response;
 
  import org.junit.jupiter.api.*;
+ import org.junit.jupiter.api.parallel.ResourceLock;
  import org.opentest4j.TestAbortedException;
 
  import nl.vpro.api.client.utils.Config;
@@ -34,6 +35,7 @@
  */
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 @Log4j2
+@ResourceLock(AbstractApiMediaBackendTest.MID)
 class MediaBackendTranscodeTest extends AbstractApiMediaBackendTest {
 
     static String fileName = MediaBackendTranscodeTest.class.getSimpleName() + "-" + SIMPLE_NOWSTRING;
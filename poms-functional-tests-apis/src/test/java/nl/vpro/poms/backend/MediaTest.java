@@ -15,6 +15,8 @@ import javax.xml.bind.JAXB;
 
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceAccessMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import nl.vpro.domain.media.*;
 import nl.vpro.domain.media.search.*;
@@ -50,6 +52,7 @@ import static org.hamcrest.Matchers.*;
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
 @Log4j2
 @ExtendWith({AllowUnavailable.class, TestMDC.class})
+@ResourceLock(value = MID, mode = ResourceAccessMode.READ)
 public class MediaTest {
 
     private static final Instant NOW = Instant.now();
@@ -15,10 +15,14 @@ import java.util.concurrent.TimeUnit;
 import javax.xml.bind.JAXB;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import nl.vpro.domain.media.*;
 import nl.vpro.domain.media.update.*;
 import nl.vpro.domain.user.Broadcaster;
+import nl.vpro.junit.extensions.LifecyclePipeline;
+import nl.vpro.junit.extensions.Step;
 import nl.vpro.parkpost.ProductCode;
 import nl.vpro.parkpost.promo.bind.File;
 import nl.vpro.parkpost.promo.bind.PromoEvent;
@@ -27,6 +31,7 @@ import nl.vpro.poms.AbstractApiMediaBackendTest;
 import static io.restassured.RestAssured.given;
 import static nl.vpro.api.client.utils.Config.Prefix.npo_backend_api;
 import static nl.vpro.api.client.utils.Config.Prefix.parkpost;
+import static nl.vpro.junit.extensions.Step.Phase.*;
 import static nl.vpro.testutils.Utils.waitUntilNotNull;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -40,8 +45,10 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
  */
 
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
+@DisabledIfSystemProperty(named = LifecyclePipeline.PROPERTY, matches = "true")
 @Timeout(value = 1, unit = TimeUnit.MINUTES)
 @Log4j2
+@ResourceLock(AbstractApiMediaBackendTest.MID)
 class PromoTest extends AbstractApiMediaBackendTest {
 
     private static final LocalDate today = LocalDate.now(Schedule.ZONE_ID);
@@ -131,6 +138,7 @@ class PromoTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     void test001() {
         promoEvent = todaysPromoEvent();
         promoEvent.setFiles(Arrays.asList(
@@ -150,6 +158,7 @@ class PromoTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(VERIFY)
     void test002arrived() {
         //promotionTitle = "1:2018-11-26T11:48:37.341+01:00 test001 Café 汉";
         MemberUpdate update = testArrived(2);
@@ -161,6 +170,7 @@ class PromoTest extends AbstractApiMediaBackendTest {
 
 
     @Test
+    @Step(WRITE)
     void test003RepostWithoutFiles() {
         assumeTrue(promoEvent != null);
         promoEvent.setFiles(null);
@@ -172,6 +182,7 @@ class PromoTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(VERIFY)
     void test004arrived() {
         // FAILS MSE-4091
         testArrived(2);
@@ -209,6 +220,7 @@ class PromoTest extends AbstractApiMediaBackendTest {
     }
 
     @Test
+    @Step(CLEANUP)
     void test999cleanup() {
         MediaUpdateList<MemberUpdate> promos = backend.getGroupMembers(PROMOTED_MID);
         int count = 0;
@@ -17,6 +17,7 @@ import nl.vpro.domain.media.update.GroupUpdate;
 import nl.vpro.domain.media.update.ProgramUpdate;
 import nl.vpro.logging.Log4j2OutputStream;
 import nl.vpro.poms.AbstractApiMediaBackendTest;
+import nl.vpro.testutils.Utils.Check;
 
 import static nl.vpro.testutils.Utils.waitUntil;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -90,10 +91,10 @@ public class MediaITest extends AbstractApiMediaBackendTest {
                 .build()
 
             );
-        clipMid = backend.set(clip);
+        clipMid = toCleanUp(backend.set(clip));
         JAXB.marshal(clip, Log4j2OutputStream.debug(log));
         log.info("Created clip {} {}", clipMid, clipTitle);
-        groupMid = backend.set(
+        groupMid = toCleanUp(backend.set(
             GroupUpdate.create(
                 MediaTestDataBuilder
                     .playlist()
@@ -104,8 +105,8 @@ public class MediaITest extends AbstractApiMediaBackendTest {
                     .broadcasters("VPRO")
                     .build()
 
-            ));
-        String offlineGroup = backend.set(
+            )));
+        String offlineGroup = toCleanUp(backend.set(
             GroupUpdate.create(
                 MediaTestDataBuilder
                     .playlist()
@@ -116,7 +117,7 @@ public class MediaITest extends AbstractApiMediaBackendTest {
                     .withAgeRating()
                     .broadcasters("VPRO")
                     .build()
-            ));
+            )));
         waitUntil(Duration.ofMinutes(2),
             () -> "clip:" + clipMid + " and group:" + groupMid + " available",
             () -> backend.getFull(clipMid) != null && backend.getFull(groupMid) != null
@@ -130,9 +131,11 @@ public class MediaITest extends AbstractApiMediaBackendTest {
     void test002CheckNewObjectInFrontendApi() {
         assumeThat(clipMid).isNotNull();
         Program clip = waitUntil(Duration.ofMinutes(10),
-            clipMid + " is a memberof " + groupMid,
-            () -> mediaUtil.findByMid(clipMid),
-            (c) -> !c.getMemberOf().isEmpty()
+            () -> probe(clipMid),
+            Check.<Program>description(clipMid + " is a memberof " + groupMid)
+                .predicate((c) -> !c.getMemberOf().isEmpty())
+                .category(MEDIA_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(clipMid))
         );
         assertThat(clip).isNotNull();
         assertThat(clip.getMainTitle()).isEqualTo(clipTitle);
@@ -159,9 +162,12 @@ public class MediaITest extends AbstractApiMediaBackendTest {
     void test004CheckUpdateTitleInFrontendApi() {
         assumeThat(clipMid).isNotNull();
         Program clip = waitUntil(Duration.ofMinutes(10),
-            clipMid + " has title " + clipTitle,
-            () -> mediaUtil.findByMid(clipMid),
-            (c) -> c.getMainTitle().equals(clipTitle));
+            () -> probe(clipMid),
+            Check.<Program>description(clipMid + " has title " + clipTitle)
+                .predicate((c) -> c.getMainTitle().equals(clipTitle))
+                .category(MEDIA_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(clipMid))
+        );
         assertThat(clip).isNotNull();
         assertThat(clip.getMainTitle()).isEqualTo(clipTitle);
         assertThat(clip.getWorkflow()).isEqualTo(Workflow.PUBLISHED);
@@ -182,9 +188,12 @@ public class MediaITest extends AbstractApiMediaBackendTest {
     void test006CheckUpdateDescriptionInFrontendApi() {
         assumeThat(clipMid).isNotNull();
         Program clip = waitUntil(Duration.ofMinutes(10),
-            clipMid + " has description " + clipDescription,
-            () -> mediaUtil.findByMid(clipMid),
-            (c) -> Objects.equals(c.getMainDescription(), clipDescription));
+            () -> probe(clipMid),
+            Check.<Program>description(clipMid + " has description " + clipDescription)
+                .predicate((c) -> Objects.equals(c.getMainDescription(), clipDescription))
+                .category(MEDIA_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(clipMid))
+        );
         assertThat(clip).isNotNull();
         assertThat(clip.getMainDescription()).isEqualTo(clipDescription);
         assertThat(clip.getMainTitle()).isEqualTo(clipTitle);
@@ -198,9 +207,12 @@ public class MediaITest extends AbstractApiMediaBackendTest {
     void test007WaitForImageRevocation() {
         assumeThat(clipMid).isNotNull();
         Program clip = waitUntil(Duration.ofMinutes(20),
-            clipMid + " has no images any more",
-            () -> mediaUtil.findByMid(clipMid),
-            (c) -> c.getImages().isEmpty());
+            () -> probe(clipMid),
+            Check.<Program>description(clipMid + " has no images any more")
+                .predicate((c) -> c.getImages().isEmpty())
+                .category(MEDIA_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(clipMid))
+        );
         assertThat(clip).isNotNull();
         assertThat(clip.getImages()).isEmpty();
     }
@@ -213,9 +225,12 @@ public class MediaITest extends AbstractApiMediaBackendTest {
     void test008WaitForSegmentRevocation() {
         assumeThat(clipMid).isNotNull();
         Program clip = waitUntil(Duration.ofMinutes(20),
-            clipMid + " has no segments any more",
-            () -> mediaUtil.findByMid(clipMid),
-            (c) -> c.getSegments().isEmpty());
+            () -> probe(clipMid),
+            Check.<Program>description(clipMid + " has no segments any more")
+                .predicate((c) -> c.getSegments().isEmpty())
+                .category(MEDIA_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(clipMid))
+        );
         assertThat(clip).isNotNull();
         assertThat(clip.getSegments()).isEmpty();
     }
@@ -228,9 +243,12 @@ public class MediaITest extends AbstractApiMediaBackendTest {
     void test009WaitForLocationsRevocation() {
         assumeThat(clipMid).isNotNull();
         Program clip = waitUntil(Duration.ofMinutes(20),
-            clipMid + " has no locations any more",
-            () -> mediaUtil.findByMid(clipMid),
-            (c) -> c.getLocations().isEmpty());
+            () -> probe(clipMid),
+            Check.<Program>description(clipMid + " has no locations any more")
+                .predicate((c) -> c.getLocations().isEmpty())
+                .category(MEDIA_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(clipMid))
+        );
         assertThat(clip).isNotNull();
         assertThat(clip.getLocations()).isEmpty();
     }
@@ -246,8 +264,9 @@ public class MediaITest extends AbstractApiMediaBackendTest {
     void test101CheckDeletedInFrontendApi() {
         assumeThat(clipMid).isNotNull();
         waitUntil(Duration.ofMinutes(10),
-            () -> clipMid + " disappeared",
-            () -> mediaUtil.findByMid(clipMid) == null
+            MEDIA_PUBLICATION,
+            clipMid + " disappeared",
+            () -> probe(clipMid) == null
         );
 
     }
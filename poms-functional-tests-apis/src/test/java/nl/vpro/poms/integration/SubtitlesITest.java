@@ -10,6 +10,7 @@ import java.util.*;
 import javax.ws.rs.core.Response;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
@@ -20,12 +21,15 @@ import nl.vpro.domain.media.update.ProgramUpdate;
 import nl.vpro.domain.subtitles.*;
 import nl.vpro.poms.AbstractApiMediaBackendTest;
 import nl.vpro.test.jupiter.AbortOnException;
+import nl.vpro.testutils.Utils.Check;
 import nl.vpro.util.Version;
 
 import static java.time.Duration.ZERO;
 import static java.util.Locale.*;
 import static nl.vpro.domain.subtitles.SubtitlesType.TRANSLATION;
+import static nl.vpro.testutils.Utils.awaitAll;
 import static nl.vpro.testutils.Utils.waitUntil;
+import static nl.vpro.testutils.Utils.waitUntilAsync;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assumptions.assumeThat;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
@@ -35,6 +39,7 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
  */
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 @Log4j2
+@ResourceLock(AbstractApiMediaBackendTest.MID_WITH_LOCATIONS)
 public class SubtitlesITest extends AbstractApiMediaBackendTest {
 
     private static final Duration ACCEPTABLE_DURATION_BACKEND = Duration.ofMinutes(2);
@@ -48,6 +53,8 @@ public class SubtitlesITest extends AbstractApiMediaBackendTest {
 
     private static boolean arrivedInBackend = false;
 
+    private static boolean locationsRevoked = false;
+
     @Test
     @Order(1)
     void addSubtitles() {
@@ -115,8 +122,11 @@ public class SubtitlesITest extends AbstractApiMediaBackendTest {
         assumeTrue(arrivedInBackend);
 
         waitUntil(ACCEPTABLE_DURATION_FRONTEND,
-            MID_WITH_LOCATIONS + " has " + JAPANESE_TRANSLATION,
-            () -> mediaUtil.findByMid(MID_WITH_LOCATIONS).getAvailableSubtitles().containsAll(Arrays.asList(JAPANESE_TRANSLATION, CHINESE_TRANSLATION))
+            () -> probe(MID_WITH_LOCATIONS),
+            Check.<MediaObject>description(MID_WITH_LOCATIONS + " has " + JAPANESE_TRANSLATION)
+                .predicate(mo -> mo.getAvailableSubtitles().containsAll(Arrays.asList(JAPANESE_TRANSLATION, CHINESE_TRANSLATION)))
+                .category(SUBTITLES_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(MID_WITH_LOCATIONS))
         );
     }
 
@@ -128,32 +138,48 @@ public class SubtitlesITest extends AbstractApiMediaBackendTest {
         o.getLocations().forEach(l -> l.setPublishStopInstant(now));
         o.getPredictions().forEach(pu -> pu.setPublishStop(now));
         backend.set(o);
+        locationsRevoked = true;
 
         waitUntil(ACCEPTABLE_DURATION_BACKEND,
             MID_WITH_LOCATIONS + " has no publishable locations",
             () -> backend.getFull(MID_WITH_LOCATIONS).getLocations().stream().noneMatch(TrackableObject::isPublishable));
     }
 
+    /**
+     * The locations are repaired by the next test class checking the shared mids. Not earlier, because this class waits until they have disappeared from the frontend.
+     */
+    @AfterAll
+    static void repairLocations() {
+        if (locationsRevoked) {
+            markDirty(MID_WITH_LOCATIONS);
+        }
+    }
+
     @Test
     @Order(6)
     void waitForCuesDisappearedInFrontendAfterLocationsRevoked() {
         assumeThat(firstTitle).isNotNull();
         assumeTrue(arrivedInBackend);
 
-        waitUntil(ACCEPTABLE_DURATION_FRONTEND,
-            MID_WITH_LOCATIONS + " has no locations in frontend",
-            () -> {
-                SortedSet<Location> locations = mediaUtil.load(MID_WITH_LOCATIONS)[0].getLocations();
-                log.info("{} has locations {}", MID_WITH_LOCATIONS, locations);
-                return locations.isEmpty();
-            });
-
-        waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+        // these are independent, so wait for them simultaneously
+        awaitAll(
+            waitUntilAsync(ACCEPTABLE_DURATION_FRONTEND,
+                SUBTITLES_PUBLICATION,
+                MID_WITH_LOCATIONS + " has no locations in frontend",
+                () -> {
+                    SortedSet<Location> locations = probe(MID_WITH_LOCATIONS).getLocations();
+                    log.info("{} has locations {}", MID_WITH_LOCATIONS, locations);
+                    return locations.isEmpty();
+                }),
+            waitUntilAsync(ACCEPTABLE_DURATION_FRONTEND,
+                SUBTITLES_PUBLICATION,
                 MID_WITH_LOCATIONS + " has no subtitles in frontend for JAPAN",
-            () -> MediaRestClientUtils.loadOrNull(mediaUtil.getClients().getSubtitlesRestService(), MID_WITH_LOCATIONS, JAPAN) == null);
-        waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+                () -> MediaRestClientUtils.loadOrNull(mediaUtil.getClients().getSubtitlesRestService(), MID_WITH_LOCATIONS, JAPAN) == null),
+            waitUntilAsync(ACCEPTABLE_DURATION_FRONTEND,
+                SUBTITLES_PUBLICATION,
                 MID_WITH_LOCATIONS + " has no subtitles in frontend for CHINESE",
-            () -> MediaRestClientUtils.loadOrNull(mediaUtil.getClients().getSubtitlesRestService(), MID_WITH_LOCATIONS, CHINESE) == null);
+                () -> MediaRestClientUtils.loadOrNull(mediaUtil.getClients().getSubtitlesRestService(), MID_WITH_LOCATIONS, CHINESE) == null)
+        );
     }
 
     @Test
@@ -184,6 +210,7 @@ public class SubtitlesITest extends AbstractApiMediaBackendTest {
     @Order(10)
     void checkUpdateOffset() {
         PeekingIterator<StandaloneCue> cueIterator = waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+            SUBTITLES_PUBLICATION,
             MID_WITH_LOCATIONS + "/" + JAPANESE_TRANSLATION + "[0] has start zero",
         () -> {
             clearCaches();
@@ -229,11 +256,16 @@ public class SubtitlesITest extends AbstractApiMediaBackendTest {
         assumeThat(backendVersionNumber).isGreaterThanOrEqualTo(Version.of(5, 3));
 
         waitUntil(ACCEPTABLE_DURATION_FRONTEND,
-            MID_WITH_LOCATIONS + " has no " + JAPANESE_TRANSLATION,
-            () -> ! mediaUtil.findByMid(MID_WITH_LOCATIONS).getAvailableSubtitles().contains(JAPANESE_TRANSLATION));
+            () -> probe(MID_WITH_LOCATIONS),
+            Check.<MediaObject>description(MID_WITH_LOCATIONS + " has no " + JAPANESE_TRANSLATION)
+                .predicate(mo -> ! mo.getAvailableSubtitles().contains(JAPANESE_TRANSLATION))
+                .category(SUBTITLES_PUBLICATION)
+                .wakeUp(mediaChanges.wakeUpOn(MID_WITH_LOCATIONS))
+        );
 
 
         waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+            SUBTITLES_PUBLICATION,
             MID_WITH_LOCATIONS + " has no subtitles for JAPAN",
             () -> MediaRestClientUtils.loadOrNull(mediaUtil.getClients().getSubtitlesRestService(), MID_WITH_LOCATIONS, JAPAN) == null);
 
@@ -287,15 +319,18 @@ public class SubtitlesITest extends AbstractApiMediaBackendTest {
     void checkCleanupFrontend() {
         assumeThat(backendVersionNumber).isGreaterThanOrEqualTo(Version.of(5, 3));
         waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+            SUBTITLES_PUBLICATION,
             MID_WITH_LOCATIONS + " has no " + JAPANESE_TRANSLATION,
-            () -> ! mediaUtil.findByMid(MID_WITH_LOCATIONS).getAvailableSubtitles().contains(JAPANESE_TRANSLATION));
+            () -> ! probe(MID_WITH_LOCATIONS).getAvailableSubtitles().contains(JAPANESE_TRANSLATION));
 
         waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+            SUBTITLES_PUBLICATION,
             MID_WITH_LOCATIONS + " has no " + CHINESE_TRANSLATION,
-            () -> ! mediaUtil.findByMid(MID_WITH_LOCATIONS).getAvailableSubtitles().contains(CHINESE_TRANSLATION));
+            () -> ! probe(MID_WITH_LOCATIONS).getAvailableSubtitles().contains(CHINESE_TRANSLATION));
 
 
         waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+            SUBTITLES_PUBLICATION,
             MID_WITH_LOCATIONS + " has no subtitles for Chinese",
             () -> MediaRestClientUtils.loadOrNull(mediaUtil.getClients().getSubtitlesRestService(), MID_WITH_LOCATIONS, CHINESE) == null);
     }
@@ -306,6 +341,7 @@ public class SubtitlesITest extends AbstractApiMediaBackendTest {
          assumeTrue(arrivedInBackend);
          for(Locale locale : locales) {
              PeekingIterator<StandaloneCue> cueIterator = waitUntil(ACCEPTABLE_DURATION_FRONTEND,
+                 SUBTITLES_PUBLICATION,
                  MID_WITH_LOCATIONS + "/" + locale + "[0]=" + firstTitle,
                  () -> {
                      clearCaches();
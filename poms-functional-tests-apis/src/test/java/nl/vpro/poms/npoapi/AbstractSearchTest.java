@@ -3,13 +3,14 @@ package nl.vpro.poms.npoapi;
 import lombok.extern.log4j.Log4j2;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.*;
 import java.util.regex.Pattern;
 
-import javax.ws.rs.core.MediaType;
-
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
 
 import com.google.common.collect.Sets;
 
@@ -20,14 +21,21 @@ import nl.vpro.util.IntegerVersion;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
+ * The invocations of the parameterized searches run concurrently, limited per host by {@link nl.vpro.junit.extensions.HostConcurrencyLimit}. They only use the client variants they get as argument, and never change the shared {@link #clients}. Every invocation has its own instance, so also its own {@link #tester}.
+ *
  * @author Michiel Meeuwissen
  * @since 1.0
  */
 @Log4j2
+@Execution(ExecutionMode.CONCURRENT)
+@TestInstance(TestInstance.Lifecycle.PER_METHOD)
 public abstract class AbstractSearchTest<T, S> extends AbstractApiTest {
     private Map<Pattern, Function<S, Boolean>> TESTERS = new HashMap<>();
-    private static Map<String, AtomicInteger> USED = new HashMap<>();
-    private static Set<String> AVAILABLE = new HashSet<>();
+    /**
+     * Per test class, how often every tester was used. These are per class, because test classes may run simultaneously.
+     */
+    private static final Map<Class<?>, Map<String, AtomicInteger>> USED = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Set<String>> AVAILABLE = new ConcurrentHashMap<>();
     private Map<Pattern, Supplier<Boolean>> ASSUMERS =  new HashMap<>();
 
     Function<S, Boolean> tester;
@@ -48,7 +56,7 @@ public abstract class AbstractSearchTest<T, S> extends AbstractApiTest {
     private void addTester(String pattern, Function<S, Boolean> consumer) {
         Pattern p = Pattern.compile(pattern);
         TESTERS.put(p, consumer);
-        AVAILABLE.add(p.pattern());
+        available(getClass()).add(p.pattern());
     }
 
 
@@ -57,9 +65,19 @@ public abstract class AbstractSearchTest<T, S> extends AbstractApiTest {
     }
 
     @BeforeAll
-    public static void clean() {
-        USED.clear();
-        AVAILABLE.clear();
+    public static void clean(TestInfo testInfo) {
+        testInfo.getTestClass().ifPresent(c -> {
+            USED.remove(c);
+            AVAILABLE.remove(c);
+        });
+    }
+
+    private static Map<String, AtomicInteger> used(Class<?> clazz) {
+        return USED.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>());
+    }
+
+    private static Set<String> available(Class<?> clazz) {
+        return AVAILABLE.computeIfAbsent(clazz, c -> ConcurrentHashMap.newKeySet());
     }
 
     @BeforeEach
@@ -77,7 +95,7 @@ public abstract class AbstractSearchTest<T, S> extends AbstractApiTest {
             if (e.getKey().matcher(name).matches()) {
                 log.info("matched {}", e.getValue());
                 result.add(e.getValue());
-                AtomicInteger atomicInteger = USED.computeIfAbsent(e.getKey().pattern(), (k) -> new AtomicInteger(0));
+                AtomicInteger atomicInteger = used(getClass()).computeIfAbsent(e.getKey().pattern(), (k) -> new AtomicInteger(0));
                 atomicInteger.incrementAndGet();
             }
         }
@@ -103,19 +121,17 @@ public abstract class AbstractSearchTest<T, S> extends AbstractApiTest {
 
     }
 
-    protected void setupClient(MediaType accept) {
-        clients.setAccept(accept);
-        clients.setContentType(accept);
-    }
-
     @AfterAll
-    public static void shutdown() {
-        Sets.SetView<String> difference = Sets.difference(AVAILABLE, USED.keySet());
+    public static void shutdown(TestInfo testInfo) {
+        Class<?> clazz = testInfo.getTestClass().orElseThrow();
+        Set<String> available = available(clazz);
+        Map<String, AtomicInteger> used = used(clazz);
+        Sets.SetView<String> difference = Sets.difference(available, used.keySet());
         if (! difference.isEmpty()) {
             //log.error("Not all testers were used: " + difference);
-            Assertions.fail("Not all testers were used: " + difference + " available: " + AVAILABLE.size() + " used: " + USED.size());
+            Assertions.fail("Not all testers were used: " + difference + " available: " + available.size() + " used: " + used.size());
         }
-        USED.entrySet().stream()
+        used.entrySet().stream()
             .map((e) -> e.getKey() + " was used " + e.getValue().intValue() + " times")
             .forEach(log::info);
 
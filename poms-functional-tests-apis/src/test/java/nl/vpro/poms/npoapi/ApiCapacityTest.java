@@ -0,0 +1,76 @@
+package nl.vpro.poms.npoapi;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import nl.vpro.api.client.frontend.NpoApiClients;
+import nl.vpro.domain.api.media.MediaForm;
+import nl.vpro.domain.media.MediaObject;
+import nl.vpro.domain.media.Schedule;
+import nl.vpro.poms.AbstractApiTest;
+import nl.vpro.poms.ApiSearchTestHelper;
+import nl.vpro.testutils.ConcurrencySweep;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Determines how many concurrent clients the frontend api can serve, before it saturates (see {@link ConcurrencySweep}). Only runs if {@value #PROPERTY} (the maximal number of concurrent clients) is set, e.g. {@code mvn test -Dtest=ApiCapacityTest -Dfunctional-tests.sweep=64}.
+ *
+ * Every client has its own {@link NpoApiClients} (so its own connections), configured like {@link #clients}. They all do the same mix of media loads, searches with the forms from {@code /examples/media/}, and schedule lists. The duration of every step is {@code functional-tests.sweep.step} (ISO-8601, default {@code PT30S}).
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+@EnabledIfSystemProperty(named = ApiCapacityTest.PROPERTY, matches = "[1-9]\\d*")
+class ApiCapacityTest extends AbstractApiTest {
+
+    public static final String PROPERTY = "functional-tests.sweep";
+
+    private static final LocalDate today = LocalDate.now(Schedule.ZONE_ID);
+
+    @Test
+    void sweep() throws Exception {
+        final int max = Integer.getInteger(PROPERTY);
+        final List<String> mids = clients.getMediaService().find(new MediaForm(), null, "", 0L, 240)
+            .asResult().stream().map(MediaObject::getMid).collect(Collectors.toList());
+        final List<MediaForm> forms = ApiSearchTestHelper.readForms("/examples/media/", MediaForm.class)
+            .stream().map(Map.Entry::getValue).collect(Collectors.toList());
+        assertThat(mids).isNotEmpty();
+        assertThat(forms).isNotEmpty();
+
+        final List<NpoApiClients> users = new ArrayList<>();
+        for (int i = 0; i < max; i++) {
+            final int number = i;
+            users.add(clients.toBuilder().toString(c -> "sweep client " + number).build());
+        }
+        try {
+            final ConcurrencySweep sweep = new ConcurrencySweep("api", max, Duration.parse(System.getProperty(PROPERTY + ".step", "PT30S")))
+                .operation("load", 6, client ->
+                    users.get(client).getMediaService().load(random(mids), null, null))
+                .operation("search", 3, client ->
+                    users.get(client).getMediaService().find(random(forms), null, null, 0L, 10))
+                .operation("schedule", 1, client ->
+                    users.get(client).getScheduleService().list(today.minusDays(ThreadLocalRandom.current().nextInt(7)), null, null, null, "ASC", 0L, 240));
+            sweep.run();
+            sweep.report();
+            assertThat(sweep.getSteps()).isNotEmpty();
+        } finally {
+            for (NpoApiClients user : users) {
+                user.close();
+            }
+        }
+    }
+
+    private static <T> T random(List<T> list) {
+        return list.get(ThreadLocalRandom.current().nextInt(list.size()));
+    }
+}
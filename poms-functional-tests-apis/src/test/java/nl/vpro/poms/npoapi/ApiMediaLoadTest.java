@@ -4,13 +4,19 @@ import lombok.extern.log4j.Log4j2;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.MediaType;
 
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -22,6 +28,7 @@ import nl.vpro.domain.api.media.MediaForm;
 import nl.vpro.domain.api.media.RedirectList;
 import nl.vpro.domain.media.MediaObject;
 import nl.vpro.poms.AbstractApiTest;
+import nl.vpro.testutils.LoadGenerator;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assumptions.assumeThat;
@@ -29,13 +36,14 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @SuppressWarnings("OptionalGetWithoutIsPresent")
 @Log4j2
+@Execution(ExecutionMode.CONCURRENT)
 public class ApiMediaLoadTest extends AbstractApiTest {
     static List<Arguments> arguments;
 
     ApiMediaLoadTest() {
     }
 
-    public static Stream<Arguments>  getParameters() {
+    public static synchronized Stream<Arguments>  getParameters() {
 
         if (arguments == null) {
             // collect some existing mids
@@ -61,13 +69,9 @@ public class ApiMediaLoadTest extends AbstractApiTest {
 
                         arguments.add(
                             Arguments.arguments(
-                                clients.toBuilder()
-                                    .profile(profile)
-                                    .accept(mediaType)
-                                    .properties(properties)
-                                    .toString((c) -> "client:" + c.getProfile() + "/" + c.getAccept() + "/" + c.getProperties())
-                                    .build(),
-                                mids));
+                                clientsFor(profile, mediaType, properties),
+                                // the invocations run concurrently, so they must not share a mutable list
+                                List.copyOf(mids)));
                     }
 
                 }
@@ -106,9 +110,10 @@ public class ApiMediaLoadTest extends AbstractApiTest {
         assumeThat(clients.getProfile()).isNotEqualTo("eo");
 
         assumeTrue(mids.size() > 0);
+        // a variant of its own, the one of the parameters is shared
+        final NpoApiClients english = clientsFor(clients.getProfile(), clients.getAccept(), clients.getProperties(), Locale.US);
         try {
-            clients.setAcceptableLanguages(Collections.singletonList(Locale.US));
-            clients.getMediaService().load(mids.get(0), null, "eo");
+            english.getMediaService().load(mids.get(0), null, "eo");
         } catch (NotFoundException nfe) {
             assertThat(nfe.getResponse().getEntity()).isInstanceOf(Error.class);
             Error error = (Error) nfe.getResponse().getEntity();
@@ -134,15 +139,16 @@ public class ApiMediaLoadTest extends AbstractApiTest {
             assertThat(o.getItems().get(i).getError()).isNull();
             MediaObject mo = o.getItems().get(i).getResult();
             String mid = mo.getMid();
-            if (!Objects.equals(mid, mids.get(i))) {
-                String redirected = redirects.getMap().get(mids.get(i));
+            String expected = mids.get(i);
+            if (!Objects.equals(mid, expected)) {
+                String redirected = redirects.getMap().get(expected);
                 if (redirected != null) {
-                    log.info("{} is redirected to {}", mids.get(i), redirected);
-                    mids.set(i, redirected);
+                    log.info("{} is redirected to {}", expected, redirected);
+                    expected = redirected;
                 }
 
             }
-            assertThat(mid).isEqualTo(mids.get(i));
+            assertThat(mid).isEqualTo(expected);
             if (clients.getProfile() != null && clients.hasAllProperties()) {
                 assertThat(clients.getAssociatedProfile().get().getMediaProfile().test(o.getItems().get(i).getResult())).isTrue();
             }
@@ -151,6 +157,115 @@ public class ApiMediaLoadTest extends AbstractApiTest {
     }
 
 
+    public static final String LOAD_RATE_PROPERTY = "functional-tests.load.rate";
 
+    private static final List<String> PROFILES = Arrays.asList(null, "vpro", "eo");
 
+    /**
+     * Generates real load on the frontend api, with an open model (see {@link LoadGenerator}). Only runs if {@value #LOAD_RATE_PROPERTY} (requests per second) is set, e.g. {@code mvn test -Dtest=ApiMediaLoadTest#generateLoad -Dfunctional-tests.load.rate=20}.
+     *
+     * Further system properties:
+     * <ul>
+     *     <li>{@code functional-tests.load.duration}: ISO-8601 duration, default {@code PT1M}</li>
+     *     <li>{@code functional-tests.load.mix}: relative weights of the calls, default {@code load=8,loadMultiple=1,find=1}</li>
+     *     <li>{@code functional-tests.load.mids}: number of mids per profile to pick from, default 500</li>
+     *     <li>{@code functional-tests.load.concurrency}: maximal number of requests in progress, default 50</li>
+     * </ul>
+     * The calls are spread evenly over all client variants (profile, accept, properties), and reported per call and variant.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = LOAD_RATE_PROPERTY, matches = LoadGenerator.POSITIVE_NUMBER)
+    void generateLoad() throws InterruptedException {
+        final Map<String, Double> mix = mix(System.getProperty("functional-tests.load.mix", "load=8,loadMultiple=1,find=1"));
+        final int poolSize = Integer.getInteger("functional-tests.load.mids", 500);
+        final LoadGenerator generator = new LoadGenerator("media",
+            Double.parseDouble(System.getProperty(LOAD_RATE_PROPERTY)),
+            Duration.parse(System.getProperty("functional-tests.load.duration", "PT1M")),
+            Integer.getInteger("functional-tests.load.concurrency", 50)
+        );
+        final List<String> profiles = new ArrayList<>();
+        for (String profile : PROFILES) {
+            final List<String> mids = midPool(profile, poolSize);
+            if (mids.isEmpty()) {
+                log.warn("No mids found in profile {}, not generating load for it", profile);
+                continue;
+            }
+            profiles.add(profile);
+            for (MediaType mediaType : Arrays.asList(MediaType.APPLICATION_JSON_TYPE, MediaType.APPLICATION_XML_TYPE)) {
+                for (String properties : Arrays.asList(null, "none", "all", "title")) {
+                    final NpoApiClients variant = clientsFor(profile, mediaType, properties);
+                    final String name = profile + "/" + mediaType.getSubtype() + "/" + properties;
+                    generator
+                        .operation("load " + name, mix.getOrDefault("load", 0d),
+                            () -> variant.getMediaService().load(random(mids), null, null))
+                        .operation("loadMultiple " + name, mix.getOrDefault("loadMultiple", 0d),
+                            () -> variant.getMediaService().loadMultiple(IdList.of(random(mids, 10)), null, null))
+                        .operation("find " + name, mix.getOrDefault("find", 0d),
+                            () -> variant.getMediaService().find(new MediaForm(), profile, "", (long) ThreadLocalRandom.current().nextInt(100), 10));
+                }
+            }
+        }
+        assumeTrue(! profiles.isEmpty(), "No mids found in any profile");
+        generator.run().report();
+    }
+
+    /**
+     * Existing mids in the given profile, to choose from in {@link #generateLoad()}
+     */
+    private static List<String> midPool(String profile, int size) {
+        final List<String> mids = new ArrayList<>();
+        long offset = 0;
+        while (mids.size() < size) {
+            final List<String> found = clients.getMediaService().find(new MediaForm(), profile, "", offset, 240)
+                .asResult().stream().map(MediaObject::getMid).collect(Collectors.toList());
+            if (found.isEmpty()) {
+                break;
+            }
+            mids.addAll(found);
+            offset += found.size();
+        }
+        log.info("Loading from {} mids in profile {}", mids.size(), profile);
+        return mids.size() > size ? mids.subList(0, size) : mids;
+    }
+
+    private static final Set<String> CALLS = new HashSet<>(Arrays.asList("load", "loadMultiple", "find"));
+
+    /**
+     * Parses {@code functional-tests.load.mix}, e.g. {@code load=8,loadMultiple=1,find=1}
+     * @throws IllegalArgumentException if it is malformed
+     */
+    private static Map<String, Double> mix(String mix) {
+        final Map<String, Double> result = new HashMap<>();
+        for (String entry : mix.trim().split("\\s*,\\s*")) {
+            final String[] keyValue = entry.split("\\s*=\\s*", 2);
+            if (keyValue.length != 2 || ! CALLS.contains(keyValue[0])) {
+                throw new IllegalArgumentException("functional-tests.load.mix: '" + entry + "' is not like <call>=<weight>, with call one of " + CALLS + " (in '" + mix + "')");
+            }
+            try {
+                final double weight = Double.parseDouble(keyValue[1]);
+                if (weight < 0) {
+                    throw new NumberFormatException("negative");
+                }
+                result.put(keyValue[0], weight);
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("functional-tests.load.mix: weight of " + keyValue[0] + " is not a non-negative number: '" + keyValue[1] + "' (in '" + mix + "')");
+            }
+        }
+        if (result.values().stream().mapToDouble(Double::doubleValue).sum() <= 0) {
+            throw new IllegalArgumentException("functional-tests.load.mix: no call has a positive weight (in '" + mix + "')");
+        }
+        return result;
+    }
+
+    private static String random(List<String> mids) {
+        return mids.get(ThreadLocalRandom.current().nextInt(mids.size()));
+    }
+
+    private static List<String> random(List<String> mids, int count) {
+        final List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(random(mids));
+        }
+        return result;
+    }
 }
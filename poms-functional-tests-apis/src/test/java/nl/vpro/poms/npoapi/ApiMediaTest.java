@@ -10,6 +10,7 @@ import javax.ws.rs.BadRequestException;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -25,6 +26,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @Log4j2
+@ResourceLock(AbstractApiTest.CLIENTS)
 public class ApiMediaTest extends AbstractApiTest {
 
     ApiMediaTest() {
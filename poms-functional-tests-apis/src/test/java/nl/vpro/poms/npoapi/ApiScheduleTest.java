@@ -2,19 +2,28 @@ package nl.vpro.poms.npoapi;
 
 import lombok.extern.log4j.Log4j2;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 
 import nl.vpro.domain.api.ApiScheduleEvent;
 import nl.vpro.domain.api.SearchResultItem;
 import nl.vpro.domain.api.media.*;
 import nl.vpro.domain.media.*;
 import nl.vpro.domain.user.Broadcaster;
+import nl.vpro.jackson2.Jackson2Mapper;
 import nl.vpro.poms.AbstractApiTest;
+import nl.vpro.poms.ScheduleRangeScan;
+import nl.vpro.testutils.LatencyRecorder;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -48,20 +57,86 @@ class ApiScheduleTest extends AbstractApiTest {
 
     @Test
     void listBroadcaster() {
-        int sizeOfWeek = 0;
-        List<ApiScheduleEvent> items = new ArrayList<>();
-        for(LocalDate date = today; date.isAfter(today.minusDays(7)); date = date.minusDays(1)) {
-            ScheduleResult o = clients.getScheduleService().listBroadcaster("VPRO", date, null, null, "broadcasters", "ASC", 0L, 240);
-            sizeOfWeek += o.getSize();
-            items.addAll(o.getItems());
-        }
-        assertThat(sizeOfWeek).isGreaterThan(10);
+        LatencyRecorder recorder = new LatencyRecorder("schedule-broadcaster");
+        long start = System.nanoTime();
+        List<ApiScheduleEvent> items = scan(recorder)
+            .broadcasters(Collections.singletonList("VPRO"), today.minusDays(6), today.plusDays(1), "broadcasters");
+        recorder.report(Duration.ofNanos(System.nanoTime() - start));
+        assertThat(items.size()).isGreaterThan(10);
+        assertThat(items).isSortedAccordingTo(Comparator.comparing(ApiScheduleEvent::getStart));
         for (ApiScheduleEvent item : items) {
             //log.info("item  " + i++ + " " + item.getMediaObject().getMid());
             assertThat(item.getParent().getBroadcasters()).contains(new Broadcaster("VPRO"));
         }
     }
 
+    @Test
+    void listChannelsOfWeek() {
+        List<String> channels = Arrays.asList("NED1", "NED2", "NED3");
+        LatencyRecorder recorder = new LatencyRecorder("schedule-channels");
+        long start = System.nanoTime();
+        List<ApiScheduleEvent> items = scan(recorder)
+            .channels(channels, today.minusDays(6), today.plusDays(1), null);
+        recorder.report(Duration.ofNanos(System.nanoTime() - start));
+        assertThat(items.size()).isGreaterThan(70);
+        assertThat(items).isSortedAccordingTo(Comparator.comparing(ApiScheduleEvent::getStart));
+        for (ApiScheduleEvent item : items) {
+            assertThat(channels).contains(item.getChannel().name());
+        }
+    }
+
+    public static final String BENCHMARK_PROPERTY = "functional-tests.schedule.benchmark";
+
+    /**
+     * Compares getting the schedule of a week for a broadcaster with a {@link ScheduleRangeScan} (a list call per day, concurrently), with one {@link ScheduleForm} search on the start of the events (paged). Only runs if {@value #BENCHMARK_PROPERTY} (the number of rounds) is set. The concurrency of the scan is {@code functional-tests.schedule.fan-out}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = BENCHMARK_PROPERTY, matches = "\\d+")
+    void benchmarkWeekOfBroadcaster() throws IOException {
+        final LocalDate from = today.minusDays(6);
+        final LocalDate until = today.plusDays(1);
+        final ScheduleForm form = Jackson2Mapper.getLenientInstance().readerFor(ScheduleForm.class).readValue(
+            "{\"searches\": {" +
+                "\"broadcasters\": \"VPRO\", " +
+                "\"start\": {\"begin\": " + guideDayStart(from) + ", \"end\": " + guideDayStart(until) + "}" +
+                "}}"
+        );
+        final LatencyRecorder recorder = new LatencyRecorder("schedule-benchmark");
+        final LatencyRecorder calls = new LatencyRecorder("schedule-benchmark-calls");
+        final ScheduleRangeScan scan = scan(calls);
+        final int rounds = Integer.getInteger(BENCHMARK_PROPERTY);
+        final long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            List<ApiScheduleEvent> fanOut = recorder.time("fan-out", System.nanoTime(), () ->
+                scan.broadcasters(Collections.singletonList("VPRO"), from, until, "broadcasters"));
+            List<ApiScheduleEvent> searched = recorder.time("form", System.nanoTime(), () -> {
+                List<ApiScheduleEvent> result = new ArrayList<>();
+                while (true) {
+                    ScheduleSearchResult page = clients.getScheduleService().find(form, null, "broadcasters", (long) result.size(), 240);
+                    page.forEach(item -> result.add(item.getResult()));
+                    if (page.getSize() < 240) {
+                        return result;
+                    }
+                }
+            });
+            log.info("Round {}: fan-out {} events, form {} events", i, fanOut.size(), searched.size());
+        }
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        calls.report(elapsed);
+        recorder.report(elapsed);
+    }
+
+    private static ScheduleRangeScan scan(LatencyRecorder recorder) {
+        return new ScheduleRangeScan(clients, Integer.getInteger("functional-tests.schedule.fan-out", 4), recorder);
+    }
+
+    /**
+     * Guide days start at 6 o'clock
+     */
+    private static long guideDayStart(LocalDate day) {
+        return day.atTime(6, 0).atZone(Schedule.ZONE_ID).toInstant().toEpochMilli();
+    }
+
 
     @Test
     void listChannel() {
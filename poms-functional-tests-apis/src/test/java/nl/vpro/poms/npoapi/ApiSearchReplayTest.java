@@ -0,0 +1,160 @@
+package nl.vpro.poms.npoapi;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+import javax.ws.rs.core.MediaType;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import nl.vpro.api.client.frontend.NpoApiClients;
+import nl.vpro.domain.api.media.MediaForm;
+import nl.vpro.domain.api.media.ScheduleForm;
+import nl.vpro.domain.api.page.PageForm;
+import nl.vpro.domain.api.subtitles.SubtitlesForm;
+import nl.vpro.poms.AbstractApiTest;
+import nl.vpro.poms.ApiSearchTestHelper;
+import nl.vpro.testutils.LatencyRecorder;
+import nl.vpro.testutils.LoadGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays all example forms (of {@code /examples/media/}, {@code /examples/pages/}, {@code /examples/schedule/} and {@code /examples/subtitles/}, the same ones as the parameterized search tests use) as load on the frontend api (see {@link LoadGenerator}), so that slow searches show up, and not only wrong ones. Only runs if {@value #RATE_PROPERTY} (searches per second) is set, e.g. {@code mvn test -Dtest=ApiSearchReplayTest -Dfunctional-tests.replay.rate=10}.
+ *
+ * Further system properties:
+ * <ul>
+ *     <li>{@code functional-tests.replay.duration}: ISO-8601 duration, default {@code PT1M}</li>
+ *     <li>{@code functional-tests.replay.concurrency}: maximal number of searches in progress, default 20</li>
+ *     <li>{@value #WEIGHTS_PROPERTY}: a CSV file with lines like {@code media/facet-relations-and-subsearch.json,1200}, e.g. the number of times such a search was done in production. Forms which are not in it get weight 1. Without it all forms are equally frequent. A malformed line, or a line for a form that doesn't exist, makes the test fail right away.</li>
+ *     <li>{@code functional-tests.replay.max-p95}: ISO-8601 duration. If set, the test fails if the p95 latency of any form exceeds it.</li>
+ *     <li>{@code functional-tests.replay.max-error-rate}: the fraction of the searches that may fail, default 0</li>
+ * </ul>
+ * The latencies are reported per form file, and the slowest forms and the failing ones are logged. Failed searches count for the latencies too: they took the time of a user as well.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+@EnabledIfSystemProperty(named = ApiSearchReplayTest.RATE_PROPERTY, matches = LoadGenerator.POSITIVE_NUMBER)
+class ApiSearchReplayTest extends AbstractApiTest {
+
+    public static final String RATE_PROPERTY = "functional-tests.replay.rate";
+
+    private static final String WEIGHTS_PROPERTY = "functional-tests.replay.weights";
+
+    private static final int SLOWEST = 10;
+
+    @Test
+    void replay() throws IOException, InterruptedException {
+        final String weightsFile = System.getProperty(WEIGHTS_PROPERTY);
+        final Map<String, Double> weights = weights(weightsFile);
+        final NpoApiClients client = clientsFor(null, MediaType.APPLICATION_JSON_TYPE, clients.getProperties());
+        final LoadGenerator generator = new LoadGenerator("replay",
+            Double.parseDouble(System.getProperty(RATE_PROPERTY)),
+            Duration.parse(System.getProperty("functional-tests.replay.duration", "PT1M")),
+            Integer.getInteger("functional-tests.replay.concurrency", 20)
+        );
+        final Set<String> forms = new HashSet<>();
+        forms.addAll(add(generator, weights, "media", MediaForm.class,
+            form -> client.getMediaService().find(form, null, "", 0L, 10)));
+        forms.addAll(add(generator, weights, "pages", PageForm.class,
+            form -> client.getPageService().find(form, null, "", 0L, 10)));
+        forms.addAll(add(generator, weights, "schedule", ScheduleForm.class,
+            form -> client.getScheduleService().find(form, null, "", 0L, 10)));
+        forms.addAll(add(generator, weights, "subtitles", SubtitlesForm.class,
+            form -> client.getSubtitlesRestService().search(form, 0L, 10)));
+        final Set<String> unknown = new TreeSet<>(weights.keySet());
+        unknown.removeAll(forms);
+        if (! unknown.isEmpty()) {
+            throw new IllegalArgumentException(WEIGHTS_PROPERTY + ": there are no forms " + unknown + " (in " + weightsFile + ")");
+        }
+        if (forms.stream().mapToDouble(f -> weights.getOrDefault(f, 1d)).sum() <= 0) {
+            throw new IllegalArgumentException(WEIGHTS_PROPERTY + ": no form has a positive weight (in " + weightsFile + ")");
+        }
+
+        generator.run().report();
+
+        final LatencyRecorder recorder = generator.getRecorder();
+        final Map<String, Histogram> latencies = recorder.getAllHistograms();
+        final Map<String, Histogram> errors = recorder.getErrorHistograms();
+        final List<String> slowest = recorder.getSlowest(SLOWEST, 95);
+        for (String key : slowest) {
+            log.warn("Slow search {}: p95 {} ms ({} of {} failed)", key, latencies.get(key).getValueAtPercentile(95) / 1000, errors.get(key).getTotalCount(), latencies.get(key).getTotalCount());
+        }
+        errors.forEach((key, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                log.warn("Failing search {}: {} of {} failed", key, histogram.getTotalCount(), latencies.get(key).getTotalCount());
+            }
+        });
+        final double maxErrorRate = Double.parseDouble(System.getProperty("functional-tests.replay.max-error-rate", "0"));
+        assertThat(recorder.getErrors())
+            .withFailMessage("%d of %d searches failed, more than a fraction of %s", recorder.getErrors(), recorder.getCount(), maxErrorRate)
+            .isLessThanOrEqualTo((long) Math.floor(maxErrorRate * recorder.getCount()));
+        final String maxP95 = System.getProperty("functional-tests.replay.max-p95");
+        if (maxP95 != null && ! slowest.isEmpty()) {
+            final long max = Duration.parse(maxP95).toNanos() / 1000;
+            assertThat(latencies.get(slowest.get(0)).getValueAtPercentile(95))
+                .withFailMessage("p95 of %s exceeds %s", slowest.get(0), maxP95)
+                .isLessThanOrEqualTo(max);
+        }
+    }
+
+    /**
+     * @return The keys of the added forms
+     */
+    private static <T> List<String> add(LoadGenerator generator, Map<String, Double> weights, String dir, Class<T> formClass, Consumer<T> search) throws IOException {
+        final List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, T> e : ApiSearchTestHelper.readForms("/examples/" + dir + "/", formClass)) {
+            final String key = dir + "/" + e.getKey();
+            generator.operation(key, weights.getOrDefault(key, 1d), () -> search.accept(e.getValue()));
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Reads the weights per form, from lines {@code <dir>/<file>,<weight>}. Empty lines and lines starting with {@code #} are ignored.
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    private static Map<String, Double> weights(String file) throws IOException {
+        final Map<String, Double> result = new HashMap<>();
+        if (file == null) {
+            return result;
+        }
+        final List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final String location = " (" + file + ":" + (i + 1) + ")";
+            final String[] keyValue = line.split("\\s*,\\s*", 2);
+            if (keyValue.length != 2 || keyValue[0].isEmpty()) {
+                throw new IllegalArgumentException(WEIGHTS_PROPERTY + ": '" + line + "' is not like <dir>/<file>,<weight>" + location);
+            }
+            try {
+                final double weight = Double.parseDouble(keyValue[1]);
+                if (! (weight >= 0)) {
+                    throw new NumberFormatException();
+                }
+                if (result.put(keyValue[0], weight) != null) {
+                    throw new IllegalArgumentException(WEIGHTS_PROPERTY + ": " + keyValue[0] + " occurs more than once" + location);
+                }
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException(WEIGHTS_PROPERTY + ": weight of " + keyValue[0] + " is not a non-negative number: '" + keyValue[1] + "'" + location);
+            }
+        }
+        log.info("Weights of {} forms from {}", result.size(), file);
+        return result;
+    }
+}
@@ -13,6 +13,7 @@ import javax.validation.constraints.NotNull;
 import javax.ws.rs.NotFoundException;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
@@ -46,6 +47,8 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
 @SuppressWarnings("OptionalGetWithoutIsPresent")
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
 @Log4j2
+@ResourceLock(AbstractApiMediaBackendTest.MID)
+@ResourceLock(AbstractApiMediaBackendTest.ANOTHER_MID)
 class PagesPublisherTest extends AbstractApiMediaBackendTest {
 
     private static final Duration ACCEPTABLE_DURATION = Duration.ofMinutes(3);
@@ -64,8 +67,27 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
         PageUpdateRateLimiter.builder().build()
     );
 
+    /**
+     * Kind of the {@link #GARBAGE} entries for pages, identified by crid
+     */
+    private static final String PAGE = "page";
+
+    @Override
+    protected String waitCategory() {
+        return PAGE_PUBLICATION;
+    }
+
     static {
         log.info("Using {}", util);
+        GARBAGE.register(PAGE,
+            crid -> {
+                Result<DeleteResult> result = util.delete(crid);
+                if (result.getStatus() != Result.Status.SUCCESS) {
+                    throw new IllegalStateException(crid + ": " + result.getStatus() + " " + result.getErrors());
+                }
+            },
+            crid -> pageUtil.load(crid)[0] == null
+        );
     }
 
     private static final String topStoryUrl = "http://test.poms.nl/test001CreateOrUpdatePageTopStory";
@@ -172,6 +194,7 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
         assumeThat(article).isNotNull();
 
         PageUpdate update = Utils.waitUntil(ACCEPTABLE_DURATION,
+            PAGE_BACKEND,
             article.getUrl() + " has title " + article.getTitle(),
             () ->
             util.get(article.getUrl()),
@@ -186,10 +209,12 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
         assumeThat(article).isNotNull();
 
         Page update = Utils.waitUntil(ACCEPTABLE_PAGE_PUBLISHED_DURATION,
-            article.getUrl() + " has title " + article.getTitle(),
             () ->
             util.getPublishedPage(article.getUrl()).orElse(null),
-            p -> Objects.equals(p.getTitle(), article.getTitle())
+            Check.<Page>description(article.getUrl() + " has title " + article.getTitle())
+                .predicate(p -> Objects.equals(p.getTitle(), article.getTitle()))
+                .category(PAGE_PUBLICATION)
+                .wakeUp(pageChanges.wakeUpOn(article.getUrl()))
         );
         assertThat(update.getTitle()).isEqualTo(article.getTitle());
     }
@@ -207,6 +232,8 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
             Check.<Page>builder()
                 .description(article.getUrl() + " has title " + article.getTitle())
                 .predicate(p -> Objects.equals(p.getTitle(), article.getTitle()))
+                .category(PAGE_PUBLICATION)
+                .wakeUp(pageChanges.wakeUpOn(article.getUrl()))
                 .build(),
             Check.<Page>builder()
                 .description(article.getUrl() + " has embeds")
@@ -293,12 +320,14 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
 
         String url = article.getUrl();
         Page page = Utils.waitUntil(ACCEPTABLE_PAGE_PUBLISHED_DURATION,
-            article.getUrl() + " has title " + article.getTitle(),
             () -> pageUtil.get(url),
-            p -> {
-                log.info("{} -> {}", url, p);
-                return p != null && Objects.equals(p.getTitle(), article.getTitle());
-            }
+            Check.<Page>description(article.getUrl() + " has title " + article.getTitle())
+                .predicate(p -> {
+                    log.info("{} -> {}", url, p);
+                    return p != null && Objects.equals(p.getTitle(), article.getTitle());
+                })
+                .category(PAGE_PUBLICATION)
+                .wakeUp(pageChanges.wakeUpOn(url))
         );
 
         MediaObject embedded = mediaUtil.findByMid(MID);
@@ -329,6 +358,7 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
         assumeTrue(pageUtil.getClients().isAvailable());
 
         MediaObject fromApi = Utils.waitUntil(ACCEPTABLE_MEDIA_PUBLISHED_DURATION,
+            MEDIA_PUBLICATION,
             MID + " has description " + embeddedDescription,
             () -> mediaUtil.findByMid(MID),
             mo -> {
@@ -348,10 +378,12 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
         assumeTrue(pageUtil.getClients().isAvailable());
 
         Page page = Utils.waitUntil(ACCEPTABLE_PAGE_PUBLISHED_DURATION,
-            article.getUrl() + " has embedded " + MID + " with description " + embeddedDescription,
             () ->
                 pageUtil.load(article.getUrl())[0],
-            p -> p != null && Objects.equals(p.getEmbeds().get(0).getMedia().getMainDescription(), embeddedDescription)
+            Check.<Page>description(article.getUrl() + " has embedded " + MID + " with description " + embeddedDescription)
+                .predicate(p -> p != null && Objects.equals(p.getEmbeds().get(0).getMedia().getMainDescription(), embeddedDescription))
+                .category(PAGE_PUBLICATION)
+                // the page itself is not republished, so no wake up from pageChanges, and the normal backoff
         );
 
         assertThat(page.getEmbeds().get(0).getMedia().getMainDescription()).isEqualTo(embeddedDescription);
@@ -375,10 +407,12 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
     public void test211CheckRemoveAnEmbed() {
         assumeThat(article).isNotNull();
         Page page = Utils.waitUntil(ACCEPTABLE_PAGE_PUBLISHED_DURATION,
-            article.getUrl() + " has only one embed",
             () ->
                 pageUtil.load(article.getUrl())[0],
-            p -> p != null && p.getEmbeds().size() == 1
+            Check.<Page>description(article.getUrl() + " has only one embed")
+                .predicate(p -> p != null && p.getEmbeds().size() == 1)
+                .category(PAGE_PUBLICATION)
+                .wakeUp(pageChanges.wakeUpOn(article.getUrl()))
         );
 
         assertThat(page.getEmbeds()).hasSize(1);
@@ -409,6 +443,7 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
                     .build();
             Result<Void> result = util.saveAndWait(article);
             assertThat(result.getStatus()).isEqualTo(Result.Status.SUCCESS);
+            GARBAGE.record(PAGE, CREATED_CRIDS[i]);
             log.info("Created {}", article);
         }
     }
@@ -552,6 +587,9 @@ class PagesPublisherTest extends AbstractApiMediaBackendTest {
         assertThat(result.getStatus())
             .withFailMessage(result.getErrors() == null ? "Status is not success but " + result.getStatus() : result.getErrors())
             .isEqualTo(Result.Status.SUCCESS);
+        for (String crid : CREATED_CRIDS) {
+            GARBAGE.forget(PAGE, crid);
+        }
     }
 
 
@@ -4,6 +4,7 @@ import io.restassured.RestAssured;
 import lombok.extern.log4j.Log4j2;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.ResourceLock;
 
 import static io.restassured.RestAssured.given;
 import static nl.vpro.api.client.utils.Config.Prefix.poms;
@@ -21,6 +22,7 @@ import static org.assertj.core.api.Assertions.assertThat;
  */
 @Log4j2
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@ResourceLock(MID)
 class LetterBoxTest {
 
     private static final String IMPORT_URL = CONFIG.url(poms, "import/");
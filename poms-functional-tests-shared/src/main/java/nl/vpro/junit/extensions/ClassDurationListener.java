@@ -0,0 +1,50 @@
+package nl.vpro.junit.extensions;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.launcher.*;
+
+import nl.vpro.testutils.ClassDurations;
+
+/**
+ * Records the wall time of every test class in {@link ClassDurations}, which is used by {@link LongestFirst}. Only classes which were not skipped are recorded. This is registered automatically via {@code META-INF/services}.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+public class ClassDurationListener implements TestExecutionListener {
+
+    private final Map<TestIdentifier, Instant> started = new ConcurrentHashMap<>();
+
+    @Override
+    public void executionStarted(TestIdentifier testIdentifier) {
+        if (isClass(testIdentifier)) {
+            started.put(testIdentifier, Instant.now());
+        }
+    }
+
+    @Override
+    public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+        Instant start = started.remove(testIdentifier);
+        if (start != null) {
+            ClassDurations.getInstance().record(
+                ((ClassSource) testIdentifier.getSource().get()).getClassName(),
+                Duration.between(start, Instant.now())
+            );
+        }
+    }
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        ClassDurations.getInstance().save();
+    }
+
+    private static boolean isClass(TestIdentifier testIdentifier) {
+        return testIdentifier.isContainer() && testIdentifier.getSource().filter(s -> s instanceof ClassSource).isPresent();
+    }
+}
@@ -0,0 +1,62 @@
+package nl.vpro.junit.extensions;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.*;
+
+import nl.vpro.testutils.Deadline;
+
+/**
+ * Sets the {@link Deadline} for the duration of the test, on the base of the nearest {@link Timeout} (on the method, the class, or one of its super classes). A small margin is kept, so that waits fail with a clear message before the hard timeout interrupts them.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+public class DeadlineExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    private static final Duration MAX_MARGIN = Duration.ofSeconds(30);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        timeout(context).ifPresent(timeout ->
+            Deadline.set(deadline(context.getRequiredTestClass().getSimpleName() + "#" + context.getRequiredTestMethod().getName(), timeout))
+        );
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        Deadline.clear();
+    }
+
+    static Optional<Duration> timeout(ExtensionContext context) {
+        return timeout(context.getRequiredTestClass(), context.getRequiredTestMethod());
+    }
+
+    static Optional<Duration> timeout(Class<?> testClass, Method method) {
+        Optional<Timeout> timeout = find(method);
+        Class<?> clazz = testClass;
+        while (! timeout.isPresent() && clazz != null) {
+            timeout = find(clazz);
+            clazz = clazz.getSuperclass();
+        }
+        return timeout.map(t -> Duration.of(t.value(), t.unit().toChronoUnit()));
+    }
+
+    static Deadline deadline(String name, Duration timeout) {
+        Duration margin = timeout.dividedBy(20);
+        if (margin.compareTo(MAX_MARGIN) > 0) {
+            margin = MAX_MARGIN;
+        }
+        Instant now = Instant.now();
+        return new Deadline(name, now, now.plus(timeout.minus(margin)));
+    }
+
+    private static Optional<Timeout> find(AnnotatedElement element) {
+        return Optional.ofNullable(element.getDeclaredAnnotation(Timeout.class));
+    }
+}
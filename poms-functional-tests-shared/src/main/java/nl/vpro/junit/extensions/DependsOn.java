@@ -0,0 +1,80 @@
+package nl.vpro.junit.extensions;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.MethodDescriptor;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.MethodOrdererContext;
+
+/**
+ * Declares on which other test methods (of the same class) a test method depends. With {@link DependsOnExtension} the test is only executed after those succeeded, and aborted if one of them didn't. Other tests of the class are not affected by a failure, so independent steps don't need to be aborted, like {@code AbortOnException} does.
+ *
+ * If the methods of the class are executed {@link org.junit.jupiter.api.parallel.ExecutionMode#CONCURRENT concurrently}, independent tests run at the same time. Otherwise use {@link Orderer} to execute them in an order that satisfies the dependencies.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DependsOn {
+
+    /**
+     * The names of the methods this test depends on
+     */
+    String[] value();
+
+    /**
+     * Whether the test must be executed anyway if a dependency failed (e.g. for cleanups). It is still executed after its dependencies.
+     */
+    boolean always() default false;
+
+    /**
+     * Orders the test methods topologically on their {@link DependsOn dependencies}. Of the methods of which all dependencies are satisfied, the one with the lowest name is taken first, so that without dependencies this is like {@link MethodOrderer.Alphanumeric}.
+     */
+    class Orderer implements MethodOrderer {
+
+        @Override
+        public void orderMethods(MethodOrdererContext context) {
+            final List<Method> ordered = order(context.getMethodDescriptors().stream()
+                .map(MethodDescriptor::getMethod)
+                .collect(Collectors.toList()));
+            context.getMethodDescriptors().sort(Comparator.comparingInt(d -> ordered.indexOf(d.getMethod())));
+        }
+
+        /**
+         * Orders the methods like {@link #orderMethods(MethodOrdererContext)} does. Also used by {@link LifecyclePipeline}.
+         */
+        static List<Method> order(Collection<Method> methods) {
+            final Map<String, Set<String>> dependencies = new HashMap<>();
+            final SortedMap<String, List<Method>> byName = new TreeMap<>();
+            for (Method method : methods) {
+                final String name = method.getName();
+                byName.computeIfAbsent(name, n -> new ArrayList<>()).add(method);
+                final Set<String> dependsOn = dependencies.computeIfAbsent(name, n -> new HashSet<>());
+                final DependsOn d = method.getAnnotation(DependsOn.class);
+                if (d != null) {
+                    dependsOn.addAll(Arrays.asList(d.value()));
+                }
+            }
+            // dependencies on methods which are not executed are not waited for
+            dependencies.values().forEach(d -> d.retainAll(byName.keySet()));
+
+            final List<Method> ordered = new ArrayList<>();
+            final Set<String> done = new HashSet<>();
+            while (! byName.isEmpty()) {
+                String next = byName.keySet().stream()
+                    .filter(name -> done.containsAll(dependencies.get(name)))
+                    .findFirst()
+                    // a cycle. Just take the first one, the extension will report the problem
+                    .orElse(byName.firstKey());
+                ordered.addAll(byName.remove(next));
+                done.add(next);
+            }
+            return ordered;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package nl.vpro.junit.extensions;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.*;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.HierarchyTraversalMode;
+import org.junit.platform.commons.support.ReflectionSupport;
+import org.opentest4j.TestAbortedException;
+
+import nl.vpro.testutils.Deadline;
+
+/**
+ * Implements {@link DependsOn}. Before a test is executed, this waits until its dependencies are finished. If one of them did not succeed, the test is aborted, which in turn aborts the tests depending on it. The test is aborted too if a dependency is not executed at all, because it was not selected.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class DependsOnExtension implements InvocationInterceptor, TestWatcher {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(DependsOnExtension.class);
+
+    @Override
+    public void interceptTestMethod(
+        Invocation<Void> invocation,
+        ReflectiveInvocationContext<Method> invocationContext,
+        ExtensionContext extensionContext) throws Throwable {
+        final Method method = extensionContext.getRequiredTestMethod();
+        final DependsOn dependsOn = method.getAnnotation(DependsOn.class);
+        if (dependsOn != null) {
+            for (String dependency : dependsOn.value()) {
+                checkExists(extensionContext.getRequiredTestClass(), method, dependency);
+                final CompletableFuture<Boolean> outcome = outcome(extensionContext, dependency);
+                if (! outcome.isDone()) {
+                    if (extensionContext.getExecutionMode() != ExecutionMode.CONCURRENT) {
+                        if (! ordered(extensionContext.getRequiredTestClass())) {
+                            throw new IllegalStateException(method.getName() + " depends on " + dependency + " which is not executed before it. Use @TestMethodOrder(DependsOn.Orderer.class)");
+                        }
+                        // the orderer would have put it before this test, so it is not selected (e.g. -Dtest=Class#method)
+                        throw new TestAbortedException(method.getName() + " depends on " + dependency + ", which is not executed");
+                    }
+                    log.info("{} waits for {}", method.getName(), dependency);
+                    await(outcome, Deadline.current().map(Deadline::remaining).orElse(null));
+                }
+                if (! outcome.getNow(false) && ! dependsOn.always()) {
+                    throw new TestAbortedException(method.getName() + " depends on " + dependency + ", which " + (outcome.isDone() ? "did not succeed" : "was not finished in time"));
+                }
+            }
+        }
+        invocation.proceed();
+    }
+
+    @Override
+    public void testSuccessful(ExtensionContext context) {
+        finished(context, true);
+    }
+
+    @Override
+    public void testAborted(ExtensionContext context, Throwable cause) {
+        finished(context, false);
+    }
+
+    @Override
+    public void testFailed(ExtensionContext context, Throwable cause) {
+        finished(context, false);
+    }
+
+    @Override
+    public void testDisabled(ExtensionContext context, Optional<String> reason) {
+        finished(context, false);
+    }
+
+    private void finished(ExtensionContext context, boolean success) {
+        context.getTestMethod().ifPresent(m ->
+            outcome(context, m.getName()).complete(success)
+        );
+    }
+
+    /**
+     * The outcomes are stored per test class.
+     */
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Boolean> outcome(ExtensionContext context, String method) {
+        final ExtensionContext classContext = context.getParent().orElse(context);
+        final Map<String, CompletableFuture<Boolean>> outcomes = classContext.getStore(NAMESPACE)
+            .getOrComputeIfAbsent("outcomes", k -> new ConcurrentHashMap<String, CompletableFuture<Boolean>>(), Map.class);
+        return outcomes.computeIfAbsent(method, m -> new CompletableFuture<>());
+    }
+
+    private static boolean ordered(Class<?> testClass) {
+        return AnnotationSupport.findAnnotation(testClass, TestMethodOrder.class)
+            .map(o -> o.value() == DependsOn.Orderer.class)
+            .orElse(false);
+    }
+
+    private static void checkExists(Class<?> testClass, Method method, String dependency) {
+        boolean exists = ReflectionSupport.findMethods(testClass,
+            m -> m.getName().equals(dependency) && AnnotationSupport.isAnnotated(m, Test.class),
+            HierarchyTraversalMode.TOP_DOWN).size() > 0;
+        if (! exists) {
+            throw new IllegalArgumentException(method + " depends on " + dependency + ", which is not a test in " + testClass);
+        }
+    }
+
+    /**
+     * Waits without occupying a thread of the (fork join) pool of JUnit, so that the dependencies can still be executed if all its threads are waiting.
+     */
+    private static void await(CompletableFuture<Boolean> outcome, Duration timeout) throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                try {
+                    if (timeout == null) {
+                        outcome.get();
+                    } else {
+                        outcome.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                } catch (ExecutionException | TimeoutException e) {
+                    log.debug(e.getMessage());
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return outcome.isDone();
+            }
+        });
+    }
+}
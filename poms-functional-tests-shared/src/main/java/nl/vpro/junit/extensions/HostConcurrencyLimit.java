@@ -0,0 +1,82 @@
+package nl.vpro.junit.extensions;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+import org.junit.jupiter.api.extension.*;
+
+import nl.vpro.testutils.AbstractTest;
+
+/**
+ * Limits the number of invocations of parameterized tests (and other test templates) that run at the same time against the same host. This makes it possible to run the invocations {@link org.junit.jupiter.api.parallel.ExecutionMode#CONCURRENT concurrently}, without overloading the server.
+ *
+ * The host of an invocation is determined by {@link AbstractTest#host(java.util.List)}. The limit is {@value #PROPERTY} (default 4), and can be overridden per host with {@code functional-tests.concurrency.per-host.<host>}.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class HostConcurrencyLimit implements InvocationInterceptor {
+
+    public static final String PROPERTY = "functional-tests.concurrency.per-host";
+
+    private static final Map<String, Semaphore> SEMAPHORES = new ConcurrentHashMap<>();
+
+    @Override
+    public void interceptTestTemplateMethod(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+        final Optional<String> host = invocationContext.getTarget()
+            .filter(t -> t instanceof AbstractTest)
+            .flatMap(t -> ((AbstractTest) t).host(invocationContext.getArguments()));
+        if (host.isEmpty()) {
+            invocation.proceed();
+            return;
+        }
+        final Semaphore semaphore = semaphore(host.get());
+        acquire(semaphore);
+        try {
+            invocation.proceed();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    static Semaphore semaphore(String host) {
+        return SEMAPHORES.computeIfAbsent(host, h -> {
+            int limit = Integer.getInteger(PROPERTY + "." + h, Integer.getInteger(PROPERTY, 4));
+            log.info("At most {} concurrent invocations on {}", limit, h);
+            return new Semaphore(limit, true);
+        });
+    }
+
+    /**
+     * Waits without occupying a thread of the (fork join) pool of JUnit, so that other tests can proceed meanwhile.
+     */
+    private static void acquire(Semaphore semaphore) throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean acquired = false;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                if (! acquired) {
+                    semaphore.acquire();
+                    acquired = true;
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                if (! acquired) {
+                    acquired = semaphore.tryAcquire();
+                }
+                return acquired;
+            }
+        });
+    }
+}
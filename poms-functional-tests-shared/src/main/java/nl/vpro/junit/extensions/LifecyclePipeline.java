@@ -0,0 +1,391 @@
+package nl.vpro.junit.extensions;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.jupiter.api.*;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.HierarchyTraversalMode;
+import org.junit.platform.commons.support.ReflectionSupport;
+import org.opentest4j.TestAbortedException;
+
+import nl.vpro.testutils.Deadline;
+import nl.vpro.testutils.Utils;
+
+/**
+ * Runs the {@link Step steps} of several life cycle test classes together. The steps of every class are divided in rounds: some {@link Step.Phase#WRITE writes} followed by the {@link Step.Phase#VERIFY verifications} of them. Per round, first the writes of all classes are executed, one after another, and then all verifications at the same time. So the waiting for e.g. publication happens for all classes at once, rather than for one class after another.
+ *
+ * The steps of a class are ordered like its {@link TestMethodOrder} would order them in a normal run. If that is {@link DependsOn.Orderer}, the rounds follow from the {@link DependsOn dependencies} too: a write which depends on a verification is in a later round than that verification, and otherwise a step is in the same round as its latest dependency (or in the first round). The names of the methods then don't matter. For other classes the order of the steps is that of {@link Order} or of their names, and a new round starts at every write after a verification.
+ *
+ * The {@link Step.Phase#CLEANUP cleanup} steps are executed at the end, also when earlier steps failed. If a normal step of a class fails, its later normal steps are aborted, like {@code AbortOnException} does.
+ *
+ * Steps with {@link DependsOn} are handled like {@link DependsOnExtension} does: they are only aborted if one of their dependencies did not succeed (unless {@link DependsOn#always()}), and a verification which depends on another verification of the same round is started only after that one finished.
+ *
+ * Of the life cycle of the test classes, {@link BeforeAll}, {@link BeforeEach}, {@link AfterEach} and {@link AfterAll} are supported (with a {@link TestInfo} parameter at most, static methods without parameters are invoked only once). The extensions of the classes are not applied. In particular:
+ * <ul>
+ *     <li>{@link DeadlineExtension}: a {@link Deadline} is set on the base of their {@link Timeout}, but the timeout itself is not enforced</li>
+ *     <li>{@link TestMDC}: the test name and number are put in the logging context, like it does</li>
+ *     <li>{@link DependsOnExtension} and {@code AbortOnException}: replaced by the aborting described above. {@code AbortOnException.NoAbort} is not considered, cleanups never abort.</li>
+ *     <li>{@link AllowUnavailable} and {@link AllowNotImplemented}: not applied, so an unavailable service makes a step fail, not abort</li>
+ *     <li>{@link HostConcurrencyLimit}: not applied. The writes are executed one after another anyway, and the verifications of all classes at the same time.</li>
+ *     <li>{@link org.junit.jupiter.api.parallel.ResourceLock}: not applied. The pipeline itself must lock the resources of all classes.</li>
+ * </ul>
+ *
+ * The test classes themselves should be {@link org.junit.jupiter.api.condition.DisabledIfSystemProperty disabled} when {@link #PROPERTY} is set, so that they don't run twice.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class LifecyclePipeline {
+
+    public static final String PROPERTY = "functional-tests.pipeline";
+
+    private static final AtomicInteger THREADS = new AtomicInteger(0);
+
+    private static final String BEFORE_ALL = "beforeAll";
+
+    private final List<Class<?>> classes;
+    private final Map<Class<?>, String> failed = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> outcomes = new ConcurrentHashMap<>();
+    private final Set<Method> invokedStatics = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "pipeline-" + THREADS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LifecyclePipeline(List<Class<?>> classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * @return All concrete classes in the given package (and its sub packages) that have {@link Step steps}
+     */
+    public static List<Class<?>> discover(String packageName) {
+        return ReflectionSupport.findAllClassesInPackage(packageName,
+            c -> ! Modifier.isAbstract(c.getModifiers()) && ! steps(c).isEmpty(),
+            n -> true)
+            .stream()
+            .sorted(Comparator.comparing(Class::getName))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The nodes to return from a {@link TestFactory}
+     */
+    public Stream<DynamicNode> nodes() {
+        final List<Round> rounds = new ArrayList<>();
+        final Round cleanup = new Round("cleanup");
+        for (Class<?> clazz : classes) {
+            final boolean byDependencies = orderer(clazz) == DependsOn.Orderer.class;
+            final Map<String, Integer> roundOf = new HashMap<>();
+            final Map<String, Step.Phase> phaseOf = new HashMap<>();
+            int round = 0;
+            Step.Phase previous = null;
+            for (Method method : steps(clazz)) {
+                Step.Phase phase = method.getAnnotation(Step.class).value();
+                if (phase.isCleanup()) {
+                    cleanup.add(clazz, method, phase);
+                    continue;
+                }
+                if (byDependencies) {
+                    round = round(method, phase, roundOf, phaseOf);
+                } else if (previous == Step.Phase.VERIFY && phase == Step.Phase.WRITE) {
+                    round++;
+                }
+                while (rounds.size() <= round) {
+                    rounds.add(new Round("round " + (rounds.size() + 1)));
+                }
+                rounds.get(round).add(clazz, method, phase);
+                roundOf.put(method.getName(), round);
+                phaseOf.put(method.getName(), phase);
+                previous = phase;
+            }
+        }
+        rounds.add(cleanup);
+        log.info("Running {} in {} rounds", classes.stream().map(Class::getSimpleName).collect(Collectors.toList()), rounds.size());
+        return Stream.concat(
+            Stream.concat(
+                Stream.of(DynamicTest.dynamicTest("beforeAll", this::beforeAll)),
+                rounds.stream().map(Round::node)
+            ),
+            Stream.of(DynamicTest.dynamicTest("afterAll", this::afterAll))
+        );
+    }
+
+    /**
+     * @return The steps of the class, in the order its {@link TestMethodOrder} would execute them
+     */
+    static List<Method> steps(Class<?> clazz) {
+        final List<Method> steps = AnnotationSupport.findAnnotatedMethods(clazz, Step.class, HierarchyTraversalMode.TOP_DOWN)
+            .stream()
+            .filter(m -> ! AnnotationSupport.isAnnotated(m, Disabled.class))
+            .sorted(Comparator.comparing(Method::getName))
+            .collect(Collectors.toList());
+        final Class<? extends MethodOrderer> orderer = orderer(clazz);
+        if (orderer == DependsOn.Orderer.class) {
+            return DependsOn.Orderer.order(steps);
+        }
+        if (orderer == MethodOrderer.OrderAnnotation.class) {
+            // stable, so on names if the order is the same
+            steps.sort(Comparator.comparingInt(m -> AnnotationSupport.findAnnotation(m, Order.class).map(Order::value).orElse(Order.DEFAULT)));
+        }
+        return steps;
+    }
+
+    private static Class<? extends MethodOrderer> orderer(Class<?> clazz) {
+        return AnnotationSupport.findAnnotation(clazz, TestMethodOrder.class)
+            .<Class<? extends MethodOrderer>>map(TestMethodOrder::value)
+            .orElse(null);
+    }
+
+    /**
+     * The round of a step of a class ordered by {@link DependsOn}, given the rounds of the steps before it
+     */
+    private static int round(Method method, Step.Phase phase, Map<String, Integer> roundOf, Map<String, Step.Phase> phaseOf) {
+        int round = 0;
+        final DependsOn dependsOn = method.getAnnotation(DependsOn.class);
+        if (dependsOn != null) {
+            for (String dependency : dependsOn.value()) {
+                final Integer dependencyRound = roundOf.get(dependency);
+                if (dependencyRound == null) {
+                    // not a (normal) step
+                    continue;
+                }
+                final boolean writeAfterVerify = phase == Step.Phase.WRITE && phaseOf.get(dependency) == Step.Phase.VERIFY;
+                round = Math.max(round, dependencyRound + (writeAfterVerify ? 1 : 0));
+            }
+        }
+        return round;
+    }
+
+    protected void beforeAll() {
+        for (Class<?> clazz : classes) {
+            try {
+                invokeAll(clazz, null, BeforeAll.class, HierarchyTraversalMode.TOP_DOWN, new StepInfo(clazz, null));
+            } catch (Throwable e) {
+                log.error("{}: {}", clazz.getSimpleName(), e.getMessage(), e);
+                failed.put(clazz, BEFORE_ALL);
+            }
+        }
+    }
+
+    protected void afterAll() {
+        executor.shutdownNow();
+        for (Class<?> clazz : classes) {
+            invokeAll(clazz, null, AfterAll.class, HierarchyTraversalMode.BOTTOM_UP, new StepInfo(clazz, null));
+        }
+    }
+
+    /**
+     * Executes one step like JUnit would do it for a test method: on a new instance, with the before and after each methods, on the current thread.
+     */
+    protected void execute(Class<?> clazz, Method method, Step.Phase phase) {
+        final String name = display(clazz, method.getName());
+        final DependsOn dependsOn = method.getAnnotation(DependsOn.class);
+        final String failure = failed.get(clazz);
+        // with declared dependencies, only the failure of those (or of the class set up) matters
+        if (! phase.isCleanup() && failure != null && (dependsOn == null || failure.equals(BEFORE_ALL))) {
+            outcomes.put(name, false);
+            throw new TestAbortedException("Not executing " + name + " because " + failure + " failed");
+        }
+        if (dependsOn != null && ! dependsOn.always()) {
+            for (String dependency : dependsOn.value()) {
+                // dependencies which are not executed at all are ignored, like DependsOn.Orderer does
+                if (Boolean.FALSE.equals(outcomes.get(display(clazz, dependency)))) {
+                    outcomes.put(name, false);
+                    throw new TestAbortedException(name + " depends on " + dependency + ", which did not succeed");
+                }
+            }
+        }
+        final StepInfo info = new StepInfo(clazz, method);
+        ThreadContext.put(TestMDC.KEY, name);
+        ThreadContext.put(TestMDC.NUMBER_KEY, TestMDC.testNumber.incrementAndGet() + ":");
+        DeadlineExtension.timeout(clazz, method)
+            .ifPresent(timeout -> Deadline.set(DeadlineExtension.deadline(name, timeout)));
+        try {
+            final Object instance = ReflectionSupport.newInstance(clazz);
+            try {
+                invokeAll(clazz, instance, BeforeEach.class, HierarchyTraversalMode.TOP_DOWN, info);
+                ReflectionSupport.invokeMethod(method, instance, arguments(method, info));
+            } finally {
+                invokeAll(clazz, instance, AfterEach.class, HierarchyTraversalMode.BOTTOM_UP, info);
+            }
+            outcomes.put(name, true);
+        } catch (TestAbortedException tae) {
+            outcomes.put(name, false);
+            throw tae;
+        } catch (Throwable e) {
+            outcomes.put(name, false);
+            if (! phase.isCleanup()) {
+                failed.putIfAbsent(clazz, method.getName());
+            }
+            throw e;
+        } finally {
+            Deadline.clear();
+            ThreadContext.remove(TestMDC.KEY);
+            ThreadContext.remove(TestMDC.NUMBER_KEY);
+        }
+    }
+
+    private static String display(Class<?> clazz, String method) {
+        return clazz.getSimpleName() + "#" + method;
+    }
+
+    private void invokeAll(Class<?> clazz, Object instance, Class<? extends java.lang.annotation.Annotation> annotation, HierarchyTraversalMode mode, TestInfo info) {
+        for (Method method : AnnotationSupport.findAnnotatedMethods(clazz, annotation, mode)) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                // static methods in a common super class are only needed once, unless they want to know the test class
+                if (method.getParameterCount() == 0 && ! invokedStatics.add(method)) {
+                    continue;
+                }
+                ReflectionSupport.invokeMethod(method, null, arguments(method, info));
+            } else {
+                ReflectionSupport.invokeMethod(method, instance, arguments(method, info));
+            }
+        }
+    }
+
+    private static Object[] arguments(Method method, TestInfo info) {
+        Object[] arguments = new Object[method.getParameterCount()];
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == TestInfo.class && info != null) {
+                arguments[i] = info;
+            } else {
+                throw new IllegalArgumentException("Cannot resolve parameter " + types[i] + " of " + method);
+            }
+        }
+        return arguments;
+    }
+
+    private class Round {
+        final String name;
+        final List<DynamicTest> sequential = new ArrayList<>();
+        final Map<String, Callable<Void>> concurrent = new LinkedHashMap<>();
+        final Map<String, List<String>> dependencies = new HashMap<>();
+        private Map<String, CompletableFuture<Void>> started;
+
+        Round(String name) {
+            this.name = name;
+        }
+
+        void add(Class<?> clazz, Method method, Step.Phase phase) {
+            final String display = display(clazz, method.getName());
+            final DependsOn dependsOn = method.getAnnotation(DependsOn.class);
+            if (dependsOn != null) {
+                dependencies.put(display, Arrays.stream(dependsOn.value())
+                    .map(d -> display(clazz, d))
+                    .collect(Collectors.toList()));
+            }
+            if (phase.isConcurrent()) {
+                concurrent.put(display, () -> {
+                    execute(clazz, method, phase);
+                    return null;
+                });
+            } else {
+                sequential.add(DynamicTest.dynamicTest(display, () -> execute(clazz, method, phase)));
+            }
+        }
+
+        /**
+         * Starts all concurrent steps of this round, the first time it is called. Steps depending on other concurrent steps of this round are started when those are finished (whether they succeeded or not).
+         */
+        synchronized Map<String, CompletableFuture<Void>> start() {
+            if (started == null) {
+                log.info("{}: starting {} verifications", name, concurrent.size());
+                started = new LinkedHashMap<>();
+                concurrent.keySet().forEach(display -> start(display, new HashSet<>()));
+            }
+            return started;
+        }
+
+        private CompletableFuture<Void> start(String display, Set<String> starting) {
+            CompletableFuture<Void> future = started.get(display);
+            if (future == null) {
+                starting.add(display);
+                final List<CompletableFuture<Void>> before = new ArrayList<>();
+                for (String dependency : dependencies.getOrDefault(display, Collections.emptyList())) {
+                    if (! concurrent.containsKey(dependency)) {
+                        continue;
+                    }
+                    if (starting.contains(dependency)) {
+                        log.warn("{}: cyclic dependency of {} on {}", name, display, dependency);
+                        continue;
+                    }
+                    before.add(start(dependency, starting));
+                }
+                final Callable<Void> step = concurrent.get(display);
+                future = CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[0]))
+                    .handle((v, t) -> null)
+                    .thenApplyAsync(v -> {
+                        try {
+                            return step.call();
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }, executor);
+                started.put(display, future);
+                starting.remove(display);
+            }
+            return future;
+        }
+
+        DynamicContainer node() {
+            return DynamicContainer.dynamicContainer(name, Stream.concat(
+                sequential.stream(),
+                concurrent.keySet().stream().map(display ->
+                    DynamicTest.dynamicTest(display, () -> Utils.await(start().get(display)))
+                )
+            ));
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + sequential.size() + " writes, " + concurrent.size() + " verifications";
+        }
+    }
+
+    private static class StepInfo implements TestInfo {
+        private final Class<?> clazz;
+        private final Method method;
+
+        StepInfo(Class<?> clazz, Method method) {
+            this.clazz = clazz;
+            this.method = method;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return method == null ? clazz.getSimpleName() : method.getName() + "()";
+        }
+
+        @Override
+        public Set<String> getTags() {
+            return AnnotationSupport.findRepeatableAnnotations(method == null ? clazz : method, Tag.class)
+                .stream()
+                .map(Tag::value)
+                .collect(Collectors.toSet());
+        }
+
+        @Override
+        public Optional<Class<?>> getTestClass() {
+            return Optional.of(clazz);
+        }
+
+        @Override
+        public Optional<Method> getTestMethod() {
+            return Optional.ofNullable(method);
+        }
+    }
+}
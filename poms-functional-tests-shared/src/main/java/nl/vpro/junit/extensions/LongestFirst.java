@@ -0,0 +1,33 @@
+package nl.vpro.junit.extensions;
+
+import java.time.Duration;
+import java.util.Comparator;
+
+import org.junit.jupiter.api.ClassDescriptor;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.ClassOrdererContext;
+
+import nl.vpro.testutils.ClassDurations;
+
+/**
+ * Orders the test classes on the duration of earlier runs (as recorded by {@link ClassDurationListener}), the longest first. If the classes are executed in parallel, this minimizes the total duration, because no long class is started when the others are already finished.
+ *
+ * Classes of which the duration is not known yet come first, in alphabetical order. So the first run is alphabetical.
+ *
+ * Configure with {@code junit.jupiter.testclass.order.default=nl.vpro.junit.extensions.LongestFirst}
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+public class LongestFirst implements ClassOrderer {
+
+    @Override
+    public void orderClasses(ClassOrdererContext context) {
+        final ClassDurations durations = ClassDurations.getInstance();
+        context.getClassDescriptors().sort(
+            Comparator.comparing((ClassDescriptor d) -> durations.get(d.getTestClass().getName()).orElse(null),
+                Comparator.nullsFirst(Comparator.<Duration>reverseOrder()))
+                .thenComparing(d -> d.getTestClass().getName())
+        );
+    }
+}
@@ -0,0 +1,54 @@
+package nl.vpro.junit.extensions;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a test method as a step in the life cycle of the test class, so that {@link LifecyclePipeline} can run the write steps of several test classes first, and then wait for all their results at the same time.
+ *
+ * The steps of one class are still executed in the order of their names, like {@link org.junit.jupiter.api.MethodOrderer.Alphanumeric}.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Step {
+
+    Phase value();
+
+    enum Phase {
+        /**
+         * Changes something. These steps are executed one after another.
+         */
+        WRITE(false, false),
+        /**
+         * Waits for, and checks, the result of the preceding write steps. These steps of all classes are executed at the same time, except that a verification which {@link DependsOn depends on} another one waits for that.
+         */
+        VERIFY(true, false),
+        /**
+         * Removes what the test created. Executed after all other steps, also if they failed.
+         */
+        CLEANUP(false, true),
+        /**
+         * Checks whether the cleanup succeeded.
+         */
+        CLEANUP_VERIFY(true, true);
+
+        private final boolean concurrent;
+        private final boolean cleanup;
+
+        Phase(boolean concurrent, boolean cleanup) {
+            this.concurrent = concurrent;
+            this.cleanup = cleanup;
+        }
+
+        public boolean isConcurrent() {
+            return concurrent;
+        }
+
+        public boolean isCleanup() {
+            return cleanup;
+        }
+    }
+}
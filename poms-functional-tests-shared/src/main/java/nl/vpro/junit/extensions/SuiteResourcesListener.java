@@ -0,0 +1,20 @@
+package nl.vpro.junit.extensions;
+
+import org.junit.platform.launcher.LauncherSession;
+import org.junit.platform.launcher.LauncherSessionListener;
+
+import nl.vpro.testutils.SuiteResources;
+
+/**
+ * Closes the {@link SuiteResources} when the launcher session is closed, i.e. after all test classes are executed. This is registered automatically via {@code META-INF/services}.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+public class SuiteResourcesListener implements LauncherSessionListener {
+
+    @Override
+    public void launcherSessionClosed(LauncherSession session) {
+        SuiteResources.closeAll();
+    }
+}
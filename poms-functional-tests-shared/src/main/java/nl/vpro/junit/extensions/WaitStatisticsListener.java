@@ -0,0 +1,22 @@
+package nl.vpro.junit.extensions;
+
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+
+import nl.vpro.testutils.ArrivalModel;
+import nl.vpro.testutils.WaitStatistics;
+
+/**
+ * Reports the {@link WaitStatistics}, and saves the {@link ArrivalModel}, when all tests are done. This is registered automatically via {@code META-INF/services}.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+public class WaitStatisticsListener implements TestExecutionListener {
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        WaitStatistics.report();
+        ArrivalModel.getInstance().save();
+    }
+}
@@ -0,0 +1,43 @@
+package nl.vpro.junit.launcher;
+
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.reporting.legacy.xml.LegacyXmlReportGeneratingListener;
+
+import nl.vpro.testutils.WaitStatistics;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+/**
+ * Executes the test classes given as arguments, in a JVM started by {@link ShardedSuite}. The JUnit XML reports are written to {@code junit} in the {@link WaitStatistics#getReportDirectory() report directory}. The exit code is {@code 1} if a test failed.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+public class Shard {
+
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = request()
+            .selectors(Arrays.stream(args).map(c -> selectClass(c)).collect(Collectors.toList()))
+            .build();
+        final Path reports = WaitStatistics.getReportDirectory().resolve("junit");
+        final PrintWriter out = new PrintWriter(System.out, true);
+        final SummaryGeneratingListener summary = new SummaryGeneratingListener();
+        final Launcher launcher = LauncherFactory.create();
+        launcher.execute(request, summary, new LegacyXmlReportGeneratingListener(reports, out));
+
+        final TestExecutionSummary result = summary.getSummary();
+        result.printTo(out);
+        result.printFailuresTo(out, 20);
+        System.exit(result.getTotalFailureCount() > 0 ? 1 : 0);
+    }
+}
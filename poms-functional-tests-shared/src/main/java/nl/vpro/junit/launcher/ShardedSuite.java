@@ -0,0 +1,278 @@
+package nl.vpro.junit.launcher;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.junit.platform.engine.discovery.ClassNameFilter;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+import nl.vpro.testutils.ClassDurations;
+import nl.vpro.testutils.WaitStatistics;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectPackage;
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+/**
+ * Divides the test classes in a package over a number of shards, and executes every shard in its own JVM (see {@link Shard}). So the shards don't share static state like clients and thread locals, and can use more cores.
+ *
+ * If the durations of the classes are known from earlier runs (see {@link ClassDurations}), the classes are divided such that the shards take about as long. Otherwise they are divided alphabetically, round robin.
+ *
+ * A {@link ResourceLock} only works within one JVM, so classes which share a resource lock (declared on the class itself, e.g. on a shared mid) are always put in the same shard.
+ *
+ * Every shard has its own subdirectory in the {@link WaitStatistics#getReportDirectory() report directory}, with its output, JUnit XML reports and wait statistics. Afterwards the XML reports are collected in {@code junit}, and the wait statistics and the output are concatenated. The {@link nl.vpro.testutils.StateDirectory state} is shared by all shards.
+ *
+ * Arguments: the package to test (default {@code nl.vpro.poms}). The number of shards is configured with {@value #SHARDS_PROPERTY}. System properties are passed on to the shards. The classpath is the one of this JVM, so start it with the test classpath (see the {@code shards} profile).
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class ShardedSuite {
+
+    public static final String SHARDS_PROPERTY = "functional-tests.shards";
+
+    /**
+     * Set in the JVM of a shard, to a suffix like {@code -shard1}
+     */
+    public static final String SHARD_PROPERTY = "functional-tests.shard";
+
+    private static final Set<String> NOT_PASSED = new HashSet<>(Arrays.asList(
+        "java.", "jdk.", "sun.", "os.", "user.", "file.", "line.", "path.", "awt.", "maven.", "classworlds.", "library.", "jboss."
+    ));
+
+    public static void main(String[] args) throws Exception {
+        final String packageName = args.length > 0 ? args[0] : "nl.vpro.poms";
+        final int shards = Integer.getInteger(SHARDS_PROPERTY, 2);
+        final Path reports = WaitStatistics.getReportDirectory().toAbsolutePath();
+
+        final List<List<String>> division = divide(discover(packageName), shards);
+        final List<Process> processes = new ArrayList<>();
+        final List<Thread> pumps = new ArrayList<>();
+        final Instant start = Instant.now();
+        for (int i = 0; i < division.size(); i++) {
+            final String name = "shard" + (i + 1);
+            final Path dir = reports.resolve(name);
+            Files.createDirectories(dir);
+            log.info("{}: {}", name, division.get(i));
+            final Process process = new ProcessBuilder(command(name, dir, division.get(i)))
+                .redirectErrorStream(true)
+                .start();
+            processes.add(process);
+            pumps.add(pump(name, process.getInputStream(), dir.resolve("output.log")));
+        }
+        int failed = 0;
+        for (int i = 0; i < processes.size(); i++) {
+            int exit = processes.get(i).waitFor();
+            pumps.get(i).join();
+            if (exit != 0) {
+                log.warn("shard{} exited with {}", i + 1, exit);
+                failed++;
+            }
+        }
+        merge(reports, division.size());
+        log.info("{} shards ready in {}, {} with failures", division.size(), Duration.between(start, Instant.now()), failed);
+        System.exit(failed > 0 ? 1 : 0);
+    }
+
+    static List<String> discover(String packageName) {
+        final TestPlan plan = LauncherFactory.create().discover(request()
+            .selectors(selectPackage(packageName))
+            .filters(ClassNameFilter.includeClassNamePatterns(ClassNameFilter.STANDARD_INCLUDE_PATTERN))
+            .build());
+        return plan.getRoots().stream()
+            .flatMap(root -> plan.getChildren(root).stream())
+            .map(TestIdentifier::getSource)
+            .flatMap(source -> source.map(Stream::of).orElseGet(Stream::empty))
+            .filter(s -> s instanceof ClassSource)
+            .map(s -> ((ClassSource) s).getClassName())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Divides the classes over the shards. Classes sharing a resource lock are first taken together (see {@link #units(List)}). If durations are known, the longest unit is repeatedly assigned to the shard which is least busy until now. Unknown classes are supposed to take the average time.
+     */
+    static List<List<String>> divide(List<String> classes, int shards) {
+        final List<List<String>> units = units(classes);
+        final List<List<String>> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(shards, units.size()); i++) {
+            result.add(new ArrayList<>());
+        }
+        final ClassDurations durations = ClassDurations.getInstance();
+        final Map<String, Long> known = new HashMap<>();
+        for (String c : classes) {
+            durations.get(c).ifPresent(d -> known.put(c, d.toMillis()));
+        }
+        if (known.isEmpty()) {
+            for (int i = 0; i < units.size(); i++) {
+                result.get(i % result.size()).addAll(units.get(i));
+            }
+            return result;
+        }
+        final long average = (long) known.values().stream().mapToLong(Long::longValue).average().orElse(0);
+        final Map<List<String>, Long> expected = new HashMap<>();
+        for (List<String> unit : units) {
+            expected.put(unit, unit.stream().mapToLong(c -> known.getOrDefault(c, average)).sum());
+        }
+        final List<List<String>> longestFirst = new ArrayList<>(units);
+        longestFirst.sort(Comparator.comparing((List<String> u) -> expected.get(u)).reversed().thenComparing(u -> u.get(0)));
+        final long[] load = new long[result.size()];
+        for (List<String> unit : longestFirst) {
+            int least = 0;
+            for (int i = 1; i < load.length; i++) {
+                if (load[i] < load[least]) {
+                    least = i;
+                }
+            }
+            result.get(least).addAll(unit);
+            load[least] += expected.get(unit);
+        }
+        for (int i = 0; i < load.length; i++) {
+            log.info("shard{} is expected to take {}", i + 1, Duration.ofMillis(load[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Groups the classes which (directly or via other classes) share a {@link ResourceLock} declared on the class. Locks of super classes are not considered, also not when a class declares them again (e.g. for writing): those are about state of the JVM itself (like the shared clients), which every shard has its own copy of.
+     *
+     * @return The groups, in the order of their first class. Classes without locks are groups on their own.
+     */
+    static List<List<String>> units(List<String> classes) {
+        final Map<String, List<String>> unitOfClass = new LinkedHashMap<>();
+        final Map<String, List<String>> unitOfLock = new HashMap<>();
+        for (String c : classes) {
+            List<String> unit = new ArrayList<>();
+            unit.add(c);
+            unitOfClass.put(c, unit);
+            for (String lock : locks(c)) {
+                final List<String> other = unitOfLock.get(lock);
+                if (other != null && other != unit) {
+                    // merge the unit of this class into the one of the lock
+                    final List<String> merged = unit;
+                    other.addAll(merged);
+                    for (String member : merged) {
+                        unitOfClass.put(member, other);
+                    }
+                    unitOfLock.replaceAll((l, u) -> u == merged ? other : u);
+                    unit = other;
+                }
+                unitOfLock.put(lock, unit);
+            }
+        }
+        final List<List<String>> result = new ArrayList<>();
+        final Set<List<String>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<String> unit : unitOfClass.values()) {
+            if (seen.add(unit)) {
+                Collections.sort(unit);
+                result.add(unit);
+            }
+        }
+        result.stream()
+            .filter(u -> u.size() > 1)
+            .forEach(u -> log.info("Sharing resource locks, so in the same shard: {}", u));
+        return result;
+    }
+
+    private static Set<String> locks(String className) {
+        try {
+            final Class<?> clazz = Class.forName(className, false, ShardedSuite.class.getClassLoader());
+            final Set<String> locks = Arrays.stream(clazz.getDeclaredAnnotationsByType(ResourceLock.class))
+                .map(ResourceLock::value)
+                .collect(Collectors.toSet());
+            for (Class<?> superClass = clazz.getSuperclass(); superClass != null; superClass = superClass.getSuperclass()) {
+                Arrays.stream(superClass.getDeclaredAnnotationsByType(ResourceLock.class))
+                    .map(ResourceLock::value)
+                    .forEach(locks::remove);
+            }
+            return locks;
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.warn("Could not determine resource locks of {}: {}", className, e.getMessage());
+            return Collections.emptySet();
+        }
+    }
+
+    private static List<String> command(String name, Path dir, List<String> classes) {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        System.getProperties().stringPropertyNames().stream()
+            .filter(key -> NOT_PASSED.stream().noneMatch(key::startsWith))
+            .filter(key -> ! key.equals(WaitStatistics.REPORT_DIR_PROPERTY))
+            .sorted()
+            .forEach(key -> command.add("-D" + key + "=" + System.getProperty(key)));
+        command.add("-D" + WaitStatistics.REPORT_DIR_PROPERTY + "=" + dir);
+        command.add("-D" + SHARD_PROPERTY + "=-" + name);
+        command.add(Shard.class.getName());
+        command.addAll(classes);
+        return command;
+    }
+
+    /**
+     * Copies the output of a shard to its log file, and to the output of this JVM, prefixed with the name of the shard.
+     */
+    private static Thread pump(String name, InputStream in, Path logFile) throws IOException {
+        final Writer file = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8);
+        final Thread thread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)); Writer out = file) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    out.write(line);
+                    out.write('\n');
+                    System.out.println("[" + name + "] " + line);
+                }
+            } catch (IOException e) {
+                log.warn("{}: {}", name, e.getMessage());
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Collects the reports of all shards in one place.
+     */
+    static void merge(Path reports, int shards) throws IOException {
+        final Path junit = Files.createDirectories(reports.resolve("junit"));
+        try (Writer statistics = Files.newBufferedWriter(reports.resolve("wait-statistics.txt"), StandardCharsets.UTF_8);
+             Writer output = Files.newBufferedWriter(reports.resolve("output.log"), StandardCharsets.UTF_8)) {
+            for (int i = 1; i <= shards; i++) {
+                final Path dir = reports.resolve("shard" + i);
+                final Path xml = dir.resolve("junit");
+                if (Files.isDirectory(xml)) {
+                    try (Stream<Path> files = Files.list(xml)) {
+                        for (Path file : files.collect(Collectors.toList())) {
+                            Files.copy(file, junit.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                }
+                append(statistics, "shard" + i, dir.resolve("wait-statistics.txt"));
+                append(output, "shard" + i, dir.resolve("output.log"));
+            }
+        }
+        log.info("Merged reports of {} shards in {}", shards, reports);
+    }
+
+    private static void append(Writer writer, String name, Path file) throws IOException {
+        if (Files.exists(file)) {
+            writer.write("==== " + name + " ====\n");
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package nl.vpro.testutils;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,4 +18,11 @@ public class AbstractTest {
 
     }
 
+    /**
+     * The host which a test invocation with the given arguments talks to, so that {@link nl.vpro.junit.extensions.HostConcurrencyLimit} can limit the number of simultaneous invocations per host. By default empty, meaning no limit.
+     */
+    public Optional<String> host(List<Object> arguments) {
+        return Optional.empty();
+    }
+
 }
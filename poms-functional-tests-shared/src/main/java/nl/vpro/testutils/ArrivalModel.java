@@ -0,0 +1,205 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.ThreadContext;
+
+import nl.vpro.junit.extensions.TestMDC;
+
+/**
+ * Remembers, between runs, how long waits in a certain {@link Utils.Check#getCategory() category} took until they succeeded. Since e.g. publication of a change takes a fairly predictable time, this can be used to {@link #backoff(String, Backoff) probe} mainly when success is to be expected.
+ *
+ * Within a test, the arrival times are kept per category <em>and</em> test (see {@link #key(String)}), because e.g. "media publication" of a new clip takes quite a bit longer than of a changed title.
+ *
+ * The arrival times are stored in {@value #FILE} in the {@link StateDirectory}.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class ArrivalModel {
+
+    public static final String FILE = "arrivals.properties";
+
+    /**
+     * The number of arrival times remembered per category
+     */
+    private static final int MAX_SAMPLES = 50;
+
+    /**
+     * The model is only used if there are at least this many arrival times for a category
+     */
+    private static final int MIN_SAMPLES = 5;
+
+    private static final Duration MIN_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * Before the 10th percentile, it is still probed, but this many times less often than from there on. Otherwise the model could only learn arrival times later than it already knows.
+     */
+    private static final int EARLY_PROBES = 4;
+
+    private static final ArrivalModel INSTANCE = new ArrivalModel();
+
+    private final Map<String, Deque<Long>> arrivals = new HashMap<>();
+    /**
+     * The arrival times recorded by this JVM, which are not yet saved
+     */
+    private final Map<String, List<Long>> recorded = new HashMap<>();
+    private boolean loaded = false;
+
+    public static ArrivalModel getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void record(String category, Duration arrival) {
+        if (category == null) {
+            return;
+        }
+        load();
+        final String key = key(category);
+        Deque<Long> samples = arrivals.computeIfAbsent(key, k -> new ArrayDeque<>());
+        samples.addLast(arrival.toMillis());
+        trim(samples);
+        recorded.computeIfAbsent(key, k -> new ArrayList<>()).add(arrival.toMillis());
+    }
+
+    /**
+     * The key under which the arrival times of the category are stored: the category, plus the current test if there is one (see {@link TestMDC}).
+     */
+    static String key(String category) {
+        final String test = ThreadContext.get(TestMDC.KEY);
+        return test == null ? category : category + " " + test;
+    }
+
+    /**
+     * @param key The {@link #key(String) key} of the category
+     * @return The arrival times known for it, sorted
+     */
+    public synchronized long[] getArrivals(String category) {
+        load();
+        Deque<Long> samples = arrivals.get(category);
+        if (samples == null) {
+            return new long[0];
+        }
+        long[] result = samples.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * A {@link Backoff} which probes only seldom before the 10th percentile of the known arrival times. Between that and the 90th percentile it probes more often the closer it is to the median. After that, and if not enough is known about the category, {@code fallback} is used.
+     *
+     * The first probe is done as {@code fallback} would, so waits which succeed immediately are not delayed. Then until the 10th percentile the interval is a quarter of it (but at least what {@code fallback} would wait), so arrivals earlier than known are still noticed, and the model can learn them.
+     */
+    public Backoff backoff(String category, Backoff fallback) {
+        final String key = key(category);
+        long[] sorted = getArrivals(key);
+        if (sorted.length < MIN_SAMPLES) {
+            return fallback;
+        }
+        final Duration p10 = Duration.ofMillis(percentile(sorted, 10));
+        final Duration median = Duration.ofMillis(percentile(sorted, 50));
+        final Duration p90 = Duration.ofMillis(percentile(sorted, 90));
+        final Duration maxInterval = max(MIN_INTERVAL, p90.minus(p10).dividedBy(4));
+        return new Backoff() {
+            @Override
+            public Duration delay(int attempt, Duration elapsed) {
+                if (elapsed.compareTo(p10) < 0) {
+                    final Duration early = attempt == 0 ? fallback.delay(attempt, elapsed) : max(fallback.delay(attempt, elapsed), p10.dividedBy(EARLY_PROBES));
+                    return min(early, p10.minus(elapsed));
+                }
+                if (elapsed.compareTo(p90) < 0) {
+                    Duration distance = elapsed.minus(median).abs().dividedBy(2);
+                    return max(MIN_INTERVAL, min(maxInterval, distance));
+                }
+                return fallback.delay(attempt, elapsed);
+            }
+
+            @Override
+            public String toString() {
+                return "learned " + key + " (p10: " + p10 + ", median: " + median + ", p90: " + p90 + ", then " + fallback + ")";
+            }
+        };
+    }
+
+    /**
+     * Adds the arrival times recorded by this JVM to the model in the {@link StateDirectory}. Other JVMs may have added their own in the mean time. Categories of which not enough is known yet are only kept if they were seen more than once, to avoid that every unique description ends up in the file.
+     */
+    public synchronized void save() {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        try {
+            StateDirectory.update(FILE, "arrival times in ms per category", properties ->
+                recorded.forEach((category, added) -> {
+                    Deque<Long> samples = parse(properties.getProperty(category));
+                    samples.addAll(added);
+                    trim(samples);
+                    if (samples.size() > 1) {
+                        properties.setProperty(category, samples.stream().map(String::valueOf).collect(Collectors.joining(",")));
+                    }
+                })
+            );
+            log.info("Saved arrival times of {} categories", recorded.size());
+            recorded.clear();
+        } catch (IOException e) {
+            log.warn("Could not save {}: {}", FILE, e.getMessage());
+        }
+    }
+
+    protected void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        final Properties properties;
+        try {
+            properties = StateDirectory.read(FILE);
+        } catch (IOException e) {
+            log.warn("Could not read {}: {}", FILE, e.getMessage());
+            return;
+        }
+        for (String category : properties.stringPropertyNames()) {
+            arrivals.put(category, parse(properties.getProperty(category)));
+        }
+        log.info("Loaded arrival times of {} categories from {}", arrivals.size(), FILE);
+    }
+
+    private static Deque<Long> parse(String value) {
+        Deque<Long> samples = new ArrayDeque<>();
+        if (value != null) {
+            for (String sample : value.split(",")) {
+                try {
+                    samples.add(Long.parseLong(sample.trim()));
+                } catch (NumberFormatException nfe) {
+                    log.debug("Ignoring {}", sample);
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static void trim(Deque<Long> samples) {
+        while (samples.size() > MAX_SAMPLES) {
+            samples.removeFirst();
+        }
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
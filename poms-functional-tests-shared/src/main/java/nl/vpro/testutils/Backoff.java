@@ -0,0 +1,42 @@
+package nl.vpro.testutils;
+
+import java.time.Duration;
+
+/**
+ * Strategy to determine how long {@link Utils#waitUntil(Duration, java.util.function.Supplier, Utils.Check[])} sleeps before (re)evaluating its condition.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@FunctionalInterface
+public interface Backoff {
+
+    /**
+     * @param attempt The number of evaluations until now. So this is {@code 0} for the delay before the first evaluation.
+     * @param elapsed The time elapsed since the start of the wait
+     * @return How long to wait before the next evaluation
+     */
+    Duration delay(int attempt, Duration elapsed);
+
+    /**
+     * The 'classical' behaviour: wait {@code first}, and after that always {@code interval}
+     */
+    static Backoff fixed(Duration first, Duration interval) {
+        return new Backoff() {
+            @Override
+            public Duration delay(int attempt, Duration elapsed) {
+                return attempt == 0 ? first : interval;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed " + first + "/" + interval;
+            }
+        };
+    }
+
+    static ExponentialBackoff.Builder exponential() {
+        return ExponentialBackoff.builder();
+    }
+
+}
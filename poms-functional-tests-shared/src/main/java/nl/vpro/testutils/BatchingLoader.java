@@ -0,0 +1,117 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Coalesces lookups of single objects which happen at about the same time (e.g. by simultaneous {@link Utils#waitUntilAsync(Duration, java.util.function.Supplier, Utils.Check[]) waits}) into one call of a 'multiple' variant. All keys requested during one {@code tick} are loaded together, and every requester gets its own result.
+ *
+ * Equal keys requested in the same tick are loaded only once.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class BatchingLoader<K, V> implements AutoCloseable {
+
+    private final String name;
+    private final Duration tick;
+    private final int maxBatchSize;
+    private final Function<List<K>, Map<K, V>> batch;
+
+    private final Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledExecutorService executor;
+    private boolean scheduled = false;
+
+    /**
+     * @param batch Loads a list of keys at once. Keys which are not found may be missing in the resulting map, or be mapped to {@code null}
+     */
+    public BatchingLoader(String name, Duration tick, int maxBatchSize, Function<List<K>, Map<K, V>> batch) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size " + maxBatchSize + " should be at least 1");
+        }
+        this.name = name;
+        this.tick = tick;
+        this.maxBatchSize = maxBatchSize;
+        this.batch = batch;
+    }
+
+    public BatchingLoader(String name, Function<List<K>, Map<K, V>> batch) {
+        this(name, Duration.ofMillis(50), 100, batch);
+    }
+
+    /**
+     * @return A future for the value associated with the key, which completes with {@code null} if there is no such value.
+     */
+    public synchronized CompletableFuture<V> loadAsync(K key) {
+        CompletableFuture<V> future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+        if (! scheduled) {
+            executor().schedule(this::flush, tick.toMillis(), TimeUnit.MILLISECONDS);
+            scheduled = true;
+        }
+        return future;
+    }
+
+    /**
+     * Blocking version of {@link #loadAsync(Object)}
+     */
+    public V load(K key) {
+        return Utils.await(loadAsync(key));
+    }
+
+    protected void flush() {
+        final Map<K, CompletableFuture<V>> due;
+        synchronized (this) {
+            due = new LinkedHashMap<>(pending);
+            pending.clear();
+            scheduled = false;
+        }
+        final List<K> keys = new ArrayList<>(due.keySet());
+        for (int i = 0; i < keys.size(); i += maxBatchSize) {
+            final List<K> part = keys.subList(i, Math.min(keys.size(), i + maxBatchSize));
+            try {
+                final Map<K, V> result = batch.apply(part);
+                log.debug("{}: loaded {} in one call", name, part);
+                for (K key : part) {
+                    due.get(key).complete(result.get(key));
+                }
+            } catch (Throwable t) {
+                log.warn("{}: {} {}", name, t.getClass().getName(), t.getMessage());
+                for (K key : part) {
+                    due.get(key).completeExceptionally(t);
+                }
+            }
+        }
+    }
+
+    private synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "batch-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.values().forEach(f -> f.cancel(true));
+        pending.clear();
+        scheduled = false;
+    }
+
+    @Override
+    public String toString() {
+        return "batching " + name + " (per " + tick + ", at most " + maxBatchSize + ")";
+    }
+}
@@ -0,0 +1,159 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Tails a feed of changes (e.g. the changes of the frontend api) once for the complete suite, and completes waiters as soon as a change for their key appears.
+ *
+ * This can be used as {@link Utils.Check#getWakeUp() wake up} for {@link Utils#waitUntil(Duration, Supplier, Utils.Check[])}, so the condition is only reevaluated if there is reason to.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class ChangeFeedAwaiter implements AutoCloseable {
+
+    /**
+     * Changes published this long before the feed was started (or before a waiter was created) are considered too.  This accounts for clock differences between us and the server.
+     */
+    private static final Duration MARGIN = Duration.ofSeconds(10);
+
+    @FunctionalInterface
+    public interface Feed {
+        /**
+         * Offers all changes published since {@code since} (inclusive) to the consumer, in order of publication.
+         */
+        void changesSince(Instant since, BiConsumer<String, Instant> consumer) throws Exception;
+    }
+
+    private final String name;
+    private final Feed feed;
+    private final Duration pollInterval;
+
+    private final Map<String, Instant> latest = new ConcurrentHashMap<>();
+    private final Map<String, List<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+    private volatile Instant since;
+
+    public ChangeFeedAwaiter(String name, Duration pollInterval, Feed feed) {
+        this.name = name;
+        this.feed = feed;
+        this.pollInterval = pollInterval;
+    }
+
+    public ChangeFeedAwaiter(String name, Feed feed) {
+        this(name, Duration.ofSeconds(2), feed);
+    }
+
+    /**
+     * @return a future that completes with the publication instant of the first change of {@code key} published after {@code after}
+     */
+    public CompletableFuture<Instant> changedAfter(String key, Instant after) {
+        start();
+        final CompletableFuture<Instant> future = new CompletableFuture<>();
+        waiters.computeIfAbsent(key, (k) -> new CopyOnWriteArrayList<>()).add(new Waiter(after, future));
+        // the change may have arrived just before we registered
+        Instant known = latest.get(key);
+        if (known != null && known.isAfter(after)) {
+            future.complete(known);
+        }
+        return future;
+    }
+
+    /**
+     * Produces wake up signals for one wait on the given key. Every signal completes on the first change after the previous one, so an already seen change doesn't wake up the waiter again.
+     */
+    public Supplier<CompletableFuture<?>> wakeUpOn(String key) {
+        final Instant[] after = new Instant[] {Instant.now().minus(MARGIN)};
+        return () -> {
+            CompletableFuture<Instant> source = changedAfter(key, after[0]);
+            CompletableFuture<Instant> result = source.thenApply(i -> {
+                after[0] = i;
+                log.info("{}: {} changed at {}", name, key, i);
+                return i;
+            });
+            // if the waiter gives up, we can forget about it too
+            result.whenComplete((i, t) -> source.cancel(false));
+            return result;
+        };
+    }
+
+    public Optional<Instant> getLatestChange(String key) {
+        return Optional.ofNullable(latest.get(key));
+    }
+
+    protected synchronized void start() {
+        if (executor == null) {
+            since = Instant.now().minus(MARGIN);
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "changes-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+            log.info("Started tailing {} changes since {}", name, since);
+        }
+    }
+
+    protected void poll() {
+        try {
+            feed.changesSince(since, this::onChange);
+        } catch (Exception e) {
+            log.warn("{}: {} {}", name, e.getClass().getName(), e.getMessage());
+        }
+    }
+
+    protected void onChange(String key, Instant publishDate) {
+        if (key == null || publishDate == null) {
+            return;
+        }
+        if (publishDate.isAfter(since)) {
+            since = publishDate;
+        }
+        latest.merge(key, publishDate, (a, b) -> a.isAfter(b) ? a : b);
+        List<Waiter> list = waiters.get(key);
+        if (list != null) {
+            for (Waiter waiter : list) {
+                if (waiter.future.isDone()) {
+                    list.remove(waiter);
+                } else if (publishDate.isAfter(waiter.after)) {
+                    waiter.future.complete(publishDate);
+                    list.remove(waiter);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        waiters.values().forEach(l -> l.forEach(w -> w.future.cancel(true)));
+        waiters.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "changes " + name + " since " + since + " (" + latest.size() + " changed)";
+    }
+
+    private static class Waiter {
+        final Instant after;
+        final CompletableFuture<Instant> future;
+
+        private Waiter(Instant after, CompletableFuture<Instant> future) {
+            this.after = after;
+            this.future = future;
+        }
+    }
+}
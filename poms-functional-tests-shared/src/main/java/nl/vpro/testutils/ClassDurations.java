@@ -0,0 +1,86 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Remembers, between runs, how long the test classes took. This can be used to start the longest ones first.
+ *
+ * The durations are stored in {@value #FILE} in the {@link StateDirectory}. Per class a weighted average is kept, in which the last run counts for half.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class ClassDurations {
+
+    public static final String FILE = "class-durations.properties";
+
+    private static final ClassDurations INSTANCE = new ClassDurations();
+
+    private final Map<String, Long> durations = new HashMap<>();
+    private final Set<String> recorded = new HashSet<>();
+    private boolean loaded = false;
+
+    public static ClassDurations getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void record(String className, Duration duration) {
+        load();
+        long millis = duration.toMillis();
+        durations.merge(className, millis, (previous, current) -> (previous + current) / 2);
+        recorded.add(className);
+    }
+
+    /**
+     * @return The expected duration of the class, if anything is known about it
+     */
+    public synchronized Optional<Duration> get(String className) {
+        load();
+        return Optional.ofNullable(durations.get(className)).map(Duration::ofMillis);
+    }
+
+    /**
+     * Stores the durations of the classes executed by this JVM in the {@link StateDirectory}, leaving the others like they are, since other JVMs may have executed those.
+     */
+    public synchronized void save() {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        try {
+            StateDirectory.update(FILE, "duration in ms per test class", properties ->
+                recorded.forEach(className -> properties.setProperty(className, String.valueOf(durations.get(className))))
+            );
+            log.info("Saved durations of {} test classes", recorded.size());
+            recorded.clear();
+        } catch (IOException e) {
+            log.warn("Could not save {}: {}", FILE, e.getMessage());
+        }
+    }
+
+    protected void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        final Properties properties;
+        try {
+            properties = StateDirectory.read(FILE);
+        } catch (IOException e) {
+            log.warn("Could not read {}: {}", FILE, e.getMessage());
+            return;
+        }
+        for (String className : properties.stringPropertyNames()) {
+            try {
+                durations.put(className, Long.parseLong(properties.getProperty(className).trim()));
+            } catch (NumberFormatException nfe) {
+                log.debug("Ignoring {} for {}", properties.getProperty(className), className);
+            }
+        }
+        log.info("Loaded durations of {} test classes from {}", durations.size(), FILE);
+    }
+}
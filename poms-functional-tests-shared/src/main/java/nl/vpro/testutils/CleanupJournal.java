@@ -0,0 +1,349 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Cleans up the objects which were created by tests (media objects, pages...) in the background, so test classes don't have to wait for that.
+ *
+ * Every created object is {@link #record(String, String) recorded} in a journal in the {@link StateDirectory}. When the test doesn't need it any more, it is {@link #dispose(String, String) disposed}, or else it is disposed when the journal is {@link #close() closed} at the end of the suite. Disposed objects are deleted in batches by a few worker threads. Afterwards it is checked whether they are really gone. Objects for which that didn't happen before the end of the run stay in the journal, and are handled in the next run.
+ *
+ * Objects which another JVM recorded but never disposed are only deleted if they are older than {@value #GRACE_PROPERTY} (default 6 hours), because that JVM may still be using them.
+ *
+ * How objects are deleted, and how to check whether they are gone, is registered per kind with {@link #register(String, Consumer, Predicate)}. Entries of kinds which are not registered are left alone.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class CleanupJournal implements AutoCloseable {
+
+    public static final String GRACE_PROPERTY = "functional-tests.cleanup.grace";
+
+    private static final int BATCH_SIZE = 20;
+    private static final int CONCURRENCY = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration INTERVAL = Duration.ofSeconds(10);
+    private static final Duration CLOSE_TIMEOUT = Duration.ofMinutes(1);
+
+    private enum State {
+        /**
+         * Recorded, but still in use
+         */
+        pending,
+        /**
+         * Should be deleted
+         */
+        ready,
+        /**
+         * Delete was sent, it is not yet checked whether it is gone
+         */
+        deleted
+    }
+
+    private static class Entry {
+        final String kind;
+        final String id;
+        State state;
+        Instant since;
+        int attempts = 0;
+
+        Entry(String kind, String id, State state, Instant since) {
+            this.kind = kind;
+            this.id = id;
+            this.state = state;
+            this.since = since;
+        }
+
+        String key() {
+            return key(kind, id);
+        }
+
+        @Override
+        public String toString() {
+            return key() + " (" + state + ")";
+        }
+    }
+
+    private static class Kind {
+        final Consumer<String> delete;
+        final Predicate<String> gone;
+
+        Kind(Consumer<String> delete, Predicate<String> gone) {
+            this.delete = delete;
+            this.gone = gone;
+        }
+    }
+
+    private final String name;
+    private final Duration grace = Duration.parse(System.getProperty(GRACE_PROPERTY, "PT6H"));
+    private final Map<String, Kind> kinds = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Set<String> changed = new HashSet<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+
+    public CleanupJournal(String name) {
+        this.name = name;
+        this.workers = Executors.newFixedThreadPool(CONCURRENCY, daemon(name + "-delete"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon(name));
+        load();
+        this.scheduler.scheduleWithFixedDelay(this::collect, INTERVAL.toMillis(), INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param kind   E.g. {@code media}
+     * @param delete Deletes the object with the given id. Should throw an exception if that fails.
+     * @param gone   Whether the deletion of the object with the given id is visible (e.g. in the frontend api)
+     */
+    public CleanupJournal register(String kind, Consumer<String> delete, Predicate<String> gone) {
+        kinds.put(kind, new Kind(delete, gone));
+        return this;
+    }
+
+    /**
+     * Records that an object was created. It will be deleted at the latest when the journal is closed.
+     * @return The id
+     */
+    public String record(String kind, String id) {
+        put(new Entry(kind, id, State.pending, Instant.now()));
+        save();
+        return id;
+    }
+
+    /**
+     * The object is not needed any more, and can be deleted.
+     */
+    public void dispose(String kind, String id) {
+        put(new Entry(kind, id, State.ready, Instant.now()));
+    }
+
+    /**
+     * The object was deleted by the test itself, so it can be removed from the journal.
+     */
+    public void forget(String kind, String id) {
+        synchronized (this) {
+            if (entries.remove(key(kind, id)) != null) {
+                changed.add(key(kind, id));
+            }
+        }
+        save();
+    }
+
+    /**
+     * Disposes everything that was recorded in this JVM, and sends the deletes for at most a minute. Whether they are gone is checked in the next run.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            synchronized (this) {
+                entries.values().stream()
+                    .filter(e -> e.state == State.pending)
+                    .forEach(e -> {
+                        e.state = State.ready;
+                        changed.add(e.key());
+                    });
+            }
+            final Instant deadline = Instant.now().plus(CLOSE_TIMEOUT);
+            while (Instant.now().isBefore(deadline) && deleteBatch()) {
+                save();
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdown();
+            save();
+            log.info("Closed {}", this);
+        }
+    }
+
+    /**
+     * One round of the background thread: sends a batch of deletes, and checks a batch of deleted objects.
+     */
+    protected void collect() {
+        try {
+            deleteBatch();
+            checkBatch();
+            save();
+        } catch (RuntimeException e) {
+            log.warn("{}: {} {}", name, e.getClass().getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return Whether there was anything to delete
+     */
+    private boolean deleteBatch() {
+        final List<Entry> batch = select(State.ready);
+        forAll(batch, e -> {
+            try {
+                kinds.get(e.kind).delete.accept(e.id);
+                log.debug("Deleted {}", e);
+                update(e, State.deleted);
+            } catch (RuntimeException ex) {
+                if (++e.attempts >= MAX_ATTEMPTS) {
+                    log.warn("Could not delete {} after {} attempts, giving up: {}", e, e.attempts, ex.getMessage());
+                    remove(e);
+                } else {
+                    log.info("Could not delete {}: {}", e, ex.getMessage());
+                }
+            }
+        });
+        return ! batch.isEmpty();
+    }
+
+    private void checkBatch() {
+        forAll(select(State.deleted), e -> {
+            try {
+                if (kinds.get(e.kind).gone.test(e.id)) {
+                    log.debug("{} is gone", e);
+                    remove(e);
+                }
+            } catch (RuntimeException ex) {
+                log.info("Could not check {}: {}", e, ex.getMessage());
+            }
+        });
+    }
+
+    private synchronized List<Entry> select(State state) {
+        return entries.values().stream()
+            .filter(e -> e.state == state)
+            .filter(e -> kinds.containsKey(e.kind))
+            .limit(BATCH_SIZE)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Runs the action on the {@link #CONCURRENCY} worker threads, and waits until it is done for the whole batch
+     */
+    private void forAll(List<Entry> batch, Consumer<Entry> action) {
+        final List<Future<?>> futures = new ArrayList<>();
+        for (Entry e : batch) {
+            futures.add(workers.submit(() -> action.accept(e)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.warn(e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private synchronized void put(Entry entry) {
+        entries.put(entry.key(), entry);
+        changed.add(entry.key());
+    }
+
+    private synchronized void update(Entry entry, State state) {
+        entry.state = state;
+        entry.since = Instant.now();
+        changed.add(entry.key());
+    }
+
+    private synchronized void remove(Entry entry) {
+        entries.remove(entry.key());
+        changed.add(entry.key());
+    }
+
+    private String file() {
+        return "cleanup-" + name + ".properties";
+    }
+
+    /**
+     * Reads what earlier runs (or other JVMs) left behind
+     */
+    private synchronized void load() {
+        final Properties properties;
+        try {
+            properties = StateDirectory.read(file());
+        } catch (IOException e) {
+            log.warn("Could not read {}: {}", file(), e.getMessage());
+            return;
+        }
+        final Instant now = Instant.now();
+        for (String key : properties.stringPropertyNames()) {
+            final String[] kindAndId = key.split(":", 2);
+            final String[] value = properties.getProperty(key).trim().split("\\s+");
+            try {
+                State state = State.valueOf(value[0]);
+                Instant since = Instant.ofEpochMilli(Long.parseLong(value[1]));
+                if (state == State.pending) {
+                    if (since.plus(grace).isAfter(now)) {
+                        log.debug("Leaving {}, it may still be in use", key);
+                        continue;
+                    }
+                    state = State.ready;
+                }
+                entries.put(key, new Entry(kindAndId[0], kindAndId[1], state, since));
+            } catch (RuntimeException e) {
+                log.debug("Ignoring {}={}", key, properties.getProperty(key));
+            }
+        }
+        if (! entries.isEmpty()) {
+            log.info("{}: {} objects of earlier runs to clean up", name, entries.size());
+        }
+    }
+
+    /**
+     * Writes the entries which were changed by this JVM to the journal
+     */
+    private void save() {
+        final Map<String, String> toSave = new HashMap<>();
+        synchronized (this) {
+            if (changed.isEmpty()) {
+                return;
+            }
+            for (String key : changed) {
+                Entry e = entries.get(key);
+                toSave.put(key, e == null ? null : e.state + " " + e.since.toEpochMilli());
+            }
+            changed.clear();
+        }
+        try {
+            StateDirectory.update(file(), "objects created by tests, to clean up", properties ->
+                toSave.forEach((key, value) -> {
+                    if (value == null) {
+                        properties.remove(key);
+                    } else {
+                        properties.setProperty(key, value);
+                    }
+                })
+            );
+        } catch (IOException e) {
+            log.warn("Could not save {}: {}", file(), e.getMessage());
+        }
+    }
+
+    private static String key(String kind, String id) {
+        return kind + ":" + id;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + " " + entries.values().stream()
+            .collect(Collectors.groupingBy(e -> e.state, TreeMap::new, Collectors.counting()));
+    }
+}
@@ -0,0 +1,248 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Measures how a service scales with the number of concurrent clients. The same mix of {@link #operation(String, double, IntConsumer) operations} is executed by 1, 2, 4, 8... up to a maximum number of clients, which each do one request after another, for a fixed time per step. Per step the throughput and the latencies are recorded (with a {@link LatencyRecorder}).
+ *
+ * The {@link #getSaturation() saturation point} is the last step after which more clients don't give (much) more throughput, while the latency does rise. Beyond that, extra load only makes everybody wait longer. Only successful requests count as throughput, since a service that fails fast would otherwise seem to scale fine.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class ConcurrencySweep {
+
+    /**
+     * A step which gives less than this relative increase of throughput, ...
+     */
+    private static final double MIN_THROUGHPUT_GAIN = 0.10;
+
+    /**
+     * ... while the p99 latency rises more than this, is beyond the saturation point.
+     */
+    private static final double MIN_LATENCY_RISE = 0.20;
+
+    private final String name;
+    private final int maxConcurrency;
+    private final Duration stepDuration;
+    private final List<Operation> operations = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+    private double totalWeight = 0;
+
+    /**
+     * @param name           Used for the file name of the report
+     * @param maxConcurrency The number of concurrent clients in the last step, at least 1
+     * @param stepDuration   How long every step takes
+     */
+    public ConcurrencySweep(String name, int maxConcurrency, Duration stepDuration) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximal concurrency of " + name + " must be at least 1, not " + maxConcurrency);
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.stepDuration = stepDuration;
+    }
+
+    /**
+     * @param name   The name of the operation
+     * @param weight The relative frequency of this operation
+     * @param action Performs one request, for the client with the given number (from 0 to the concurrency of the step). Throws an exception if it fails.
+     */
+    public ConcurrencySweep operation(String name, double weight, IntConsumer action) {
+        operations.add(new Operation(name, weight, action));
+        totalWeight += weight;
+        return this;
+    }
+
+    /**
+     * Executes all steps
+     */
+    public List<Step> run() throws InterruptedException {
+        if (operations.isEmpty()) {
+            throw new IllegalStateException("No operations for " + name);
+        }
+        steps.clear();
+        for (int concurrency = 1; ; concurrency = Math.min(concurrency * 2, maxConcurrency)) {
+            steps.add(step(concurrency));
+            if (concurrency == maxConcurrency) {
+                break;
+            }
+        }
+        return steps;
+    }
+
+    private Step step(int concurrency) throws InterruptedException {
+        log.info("{}: {} concurrent clients for {}", name, concurrency, stepDuration);
+        final LatencyRecorder recorder = new LatencyRecorder(name + "-" + concurrency);
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final long start = System.nanoTime();
+        final long end = start + stepDuration.toNanos();
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                final int client = i;
+                executor.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        final Operation operation = choose(ThreadLocalRandom.current().nextDouble() * totalWeight);
+                        try {
+                            recorder.time(operation.name, System.nanoTime(), () -> {
+                                operation.action.accept(client);
+                                return null;
+                            });
+                        } catch (RuntimeException e) {
+                            log.debug("{}: {}", operation.name, e.getMessage());
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            if (! executor.awaitTermination(stepDuration.toMillis() + Duration.ofMinutes(1).toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("{}: not all clients finished", name);
+                executor.shutdownNow();
+            }
+        }
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        final Step step = new Step(concurrency, recorder.getCount(), recorder.getErrors(), elapsed, recorder.getTotal());
+        log.info("{}: {}", name, step);
+        return step;
+    }
+
+    private Operation choose(double r) {
+        for (Operation o : operations) {
+            r -= o.weight;
+            if (r < 0) {
+                return o;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    /**
+     * @return The last step before throughput stopped rising while latency kept climbing, if that happened
+     */
+    public Optional<Step> getSaturation() {
+        for (int i = 1; i < steps.size(); i++) {
+            final Step previous = steps.get(i - 1);
+            final Step step = steps.get(i);
+            final boolean flat = step.getThroughput() < previous.getThroughput() * (1 + MIN_THROUGHPUT_GAIN);
+            final boolean slower = step.getLatency(99) > previous.getLatency(99) * (1 + MIN_LATENCY_RISE);
+            if (flat && slower) {
+                return Optional.of(previous);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Logs throughput and latencies per step, and the saturation point, and writes them to {@code sweep-<name>.txt} in the {@link WaitStatistics#getReportDirectory() report directory}.
+     */
+    public String report() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%11s %8s %8s %7s %9s %9s %9s %9s%n", "concurrency", "count", "ok/s", "errors", "p50", "p95", "p99", "max"));
+        for (Step step : steps) {
+            builder.append(String.format("%11d %8d %8.1f %6.1f%% %9s %9s %9s %9s%n",
+                step.concurrency,
+                step.count,
+                step.getThroughput(),
+                step.getErrorRate(),
+                LatencyRecorder.millis(step.latencies, 50),
+                LatencyRecorder.millis(step.latencies, 95),
+                LatencyRecorder.millis(step.latencies, 99),
+                LatencyRecorder.millis(step.latencies, 100)
+            ));
+        }
+        builder.append(getSaturation()
+            .map(s -> String.format("Saturated at %d concurrent clients (%.1f successful req/s, %.1f%% errors)%n", s.concurrency, s.getThroughput(), s.getErrorRate()))
+            .orElse(String.format("Not saturated up to %d concurrent clients%n", maxConcurrency)));
+        log.info("{} (latencies of successful requests in ms):\n{}", name, builder);
+        final Path file = WaitStatistics.getReportDirectory().resolve("sweep-" + name + ".txt");
+        try {
+            Files.createDirectories(file.getParent());
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                writer.print(builder);
+            }
+            log.info("Wrote {}", file.toAbsolutePath());
+        } catch (IOException ioe) {
+            log.warn("Could not write {}: {}", file, ioe.getMessage());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The result of one step of the sweep
+     */
+    public static class Step {
+        private final int concurrency;
+        private final long count;
+        private final long errors;
+        private final Duration elapsed;
+        private final Histogram latencies;
+
+        Step(int concurrency, long count, long errors, Duration elapsed, Histogram latencies) {
+            this.concurrency = concurrency;
+            this.count = count;
+            this.errors = errors;
+            this.elapsed = elapsed;
+            this.latencies = latencies;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * @return Successful requests per second
+         */
+        public double getThroughput() {
+            return (count - errors) * 1_000_000_000.0 / Math.max(1, elapsed.toNanos());
+        }
+
+        /**
+         * @return The percentage of the requests that failed
+         */
+        public double getErrorRate() {
+            return count == 0 ? 0.0 : 100.0 * errors / count;
+        }
+
+        /**
+         * @return The latency at the given percentile, in microseconds
+         */
+        public long getLatency(double percentile) {
+            return latencies.getTotalCount() == 0 ? 0 : latencies.getValueAtPercentile(percentile);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d clients: %d requests, %.1f successful/s, %d errors (%.1f%%), p99 %.1f ms", concurrency, count, getThroughput(), errors, getErrorRate(), getLatency(99) / 1000.0);
+        }
+    }
+
+    private static class Operation {
+        final String name;
+        final double weight;
+        final IntConsumer action;
+
+        Operation(String name, double weight, IntConsumer action) {
+            this.name = name;
+            this.weight = weight;
+            this.action = action;
+        }
+    }
+}
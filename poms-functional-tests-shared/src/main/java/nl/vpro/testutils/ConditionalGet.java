@@ -0,0 +1,153 @@
+package nl.vpro.testutils;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+/**
+ * Polls urls with conditional requests ({@code If-None-Match}/{@code If-Modified-Since}). If the server answers {@code 304 Not Modified}, the previously parsed value is returned, without downloading and parsing it again.
+ *
+ * This is meant for probes in {@link Utils#waitUntil(java.time.Duration, java.util.function.Supplier, Utils.Check[]) waits} on big objects, which mostly don't change between two evaluations.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class ConditionalGet<T> implements AutoCloseable {
+
+    private final Client client;
+    private final String accept;
+    private final Function<String, T> parser;
+
+    private final Map<String, Validated<T>> validated = new ConcurrentHashMap<>();
+
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong modified = new AtomicLong();
+
+    /**
+     * @param client The client to use. Authentication and such should be {@link Client#register(Object) registered} on it.
+     * @param accept The accept header to send
+     * @param parser Converts the body of the response to the value
+     */
+    public ConditionalGet(Client client, String accept, Function<String, T> parser) {
+        this.client = client;
+        this.accept = accept;
+        this.parser = parser;
+    }
+
+    /**
+     * @return The (possibly unchanged) value at the url, or {@code null} if it's not found
+     */
+    public T get(String url) {
+        return getResult(url).map(Result::getValue).orElse(null);
+    }
+
+    /**
+     * @return The result for the given url, which also indicates whether it was changed since the previous call. Empty if not found.
+     */
+    public Optional<Result<T>> getResult(String url) {
+        final Validated<T> previous = validated.get(url);
+        Invocation.Builder request = client.target(url).request(accept);
+        if (previous != null) {
+            if (previous.etag != null) {
+                request = request.header(HttpHeaders.IF_NONE_MATCH, previous.etag);
+            }
+            if (previous.lastModified != null) {
+                request = request.header(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified);
+            }
+        }
+        final Response response = request.get();
+        try {
+            switch (response.getStatus()) {
+                case 304:
+                    if (previous == null) {
+                        throw new IllegalStateException("Not modified, but nothing known about " + url);
+                    }
+                    notModified.incrementAndGet();
+                    log.debug("{} not modified", url);
+                    return Optional.of(new Result<>(previous.value, false));
+                case 404:
+                case 410:
+                    validated.remove(url);
+                    return Optional.empty();
+                case 200:
+                    final T value = parser.apply(response.readEntity(String.class));
+                    validated.put(url, new Validated<>(
+                        response.getHeaderString(HttpHeaders.ETAG),
+                        response.getHeaderString(HttpHeaders.LAST_MODIFIED),
+                        value));
+                    modified.incrementAndGet();
+                    return Optional.of(new Result<>(value, true));
+                default:
+                    throw new IllegalStateException(url + " " + response.getStatus() + " " + response.getStatusInfo().getReasonPhrase());
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Forgets the validators of the given url, so the next request is unconditional.
+     */
+    public void evict(String url) {
+        validated.remove(url);
+    }
+
+    public void clear() {
+        validated.clear();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public long getModified() {
+        return modified.get();
+    }
+
+    /**
+     * Closes the client
+     */
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    @Override
+    public String toString() {
+        return "conditional get (" + validated.size() + " urls, " + notModified + " not modified, " + modified + " modified)";
+    }
+
+    @Getter
+    public static class Result<T> {
+        private final T value;
+        private final boolean changed;
+
+        Result(T value, boolean changed) {
+            this.value = value;
+            this.changed = changed;
+        }
+    }
+
+    private static class Validated<T> {
+        final String etag;
+        final String lastModified;
+        final T value;
+
+        Validated(String etag, String lastModified, T value) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package nl.vpro.testutils;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The moment the current test must be ready, and how the time until now was spent. {@link Utils#waitUntil(Duration, java.util.function.Supplier, Utils.Check[]) Waits} don't wait longer than the remaining time, and mention the earlier waits if they fail because of that.
+ *
+ * Normally, this is set by {@link nl.vpro.junit.extensions.DeadlineExtension} on the base of the {@link org.junit.jupiter.api.Timeout} of the test.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+public class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    @Getter
+    private final String name;
+    @Getter
+    private final Instant start;
+    @Getter
+    private final Instant end;
+
+    private final List<String> spent = new CopyOnWriteArrayList<>();
+
+    public Deadline(String name, Instant start, Instant end) {
+        this.name = name;
+        this.start = start;
+        this.end = end;
+    }
+
+    public Deadline(String name, Duration budget) {
+        this(name, Instant.now(), Instant.now().plus(budget));
+    }
+
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public static void set(Deadline deadline) {
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public Duration remaining() {
+        Duration remaining = Duration.between(Instant.now(), end);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    /**
+     * @return The given duration, or the remaining time if that is shorter.
+     */
+    public Duration limit(Duration acceptable) {
+        Duration remaining = remaining();
+        return remaining.compareTo(acceptable) < 0 ? remaining : acceptable;
+    }
+
+    /**
+     * Registers how long a wait took.
+     */
+    public void spent(String description, Duration duration, boolean success) {
+        spent.add(description + ": " + duration + (success ? "" : " (failed)"));
+    }
+
+    /**
+     * @return A description of where the time went until now
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(name)
+            .append(" has a budget of ").append(Duration.between(start, end))
+            .append(", of which ").append(Duration.between(start, Instant.now())).append(" is used");
+        if (spent.isEmpty()) {
+            builder.append(" (no earlier waits)");
+        } else {
+            builder.append(". Waits:");
+            for (String s : spent) {
+                builder.append("\n  ").append(s);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return name + " until " + end;
+    }
+}
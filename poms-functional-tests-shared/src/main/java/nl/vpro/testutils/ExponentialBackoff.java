@@ -0,0 +1,53 @@
+package nl.vpro.testutils;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Waits {@link #getMin()} at first, and then every time {@link #getFactor()} times longer, until {@link #getMax()}. Every delay is randomly varied by {@link #getJitter()}, so that simultaneous waits don't all probe at the same moment.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Getter
+public class ExponentialBackoff implements Backoff {
+
+    private final Duration min;
+    private final Duration max;
+    private final double factor;
+    private final double jitter;
+
+    @lombok.Builder(builderClassName = "Builder")
+    private ExponentialBackoff(Duration min, Duration max, Double factor, Double jitter) {
+        this.min = min == null ? Duration.ofSeconds(1) : min;
+        this.max = max == null ? Duration.ofSeconds(15) : max;
+        this.factor = factor == null ? 2.0 : factor;
+        this.jitter = jitter == null ? 0.2 : jitter;
+        if (this.max.compareTo(this.min) < 0) {
+            throw new IllegalArgumentException("Maximum " + this.max + " is smaller than minimum " + this.min);
+        }
+        if (this.factor < 1.0) {
+            throw new IllegalArgumentException("Factor " + this.factor + " should be at least 1");
+        }
+        if (this.jitter < 0 || this.jitter >= 1.0) {
+            throw new IllegalArgumentException("Jitter " + this.jitter + " should be in [0, 1)");
+        }
+    }
+
+    @Override
+    public Duration delay(int attempt, Duration elapsed) {
+        double millis = min.toMillis() * Math.pow(factor, attempt);
+        if (jitter > 0) {
+            millis *= ThreadLocalRandom.current().nextDouble(1 - jitter, 1 + jitter);
+        }
+        millis = Math.max(min.toMillis(), Math.min(max.toMillis(), millis));
+        return Duration.ofMillis((long) millis);
+    }
+
+    @Override
+    public String toString() {
+        return "exponential " + min + ".." + max + " (x" + factor + ", jitter " + jitter + ")";
+    }
+}
@@ -0,0 +1,83 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks (and repairs) shared fixtures only once per run, rather than in the {@code @BeforeAll} of every test class. The checks of all fixtures run at the same time.
+ *
+ * A test class which damages a fixture can {@link #markDirty(String) mark it dirty}, so that it is checked again the next time {@link #verify()} is called. A check which failed is tried again too.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class FixtureChecks {
+
+    private final String name;
+    private final Map<String, Runnable> checks = new LinkedHashMap<>();
+    private final Map<String, CompletableFuture<Void>> verified = new ConcurrentHashMap<>();
+
+    public FixtureChecks(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param id    The id of the fixture
+     * @param check Checks the fixture, and repairs it if needed
+     */
+    public synchronized FixtureChecks add(String id, Runnable check) {
+        checks.put(id, check);
+        return this;
+    }
+
+    /**
+     * Runs the checks of the fixtures which are not verified yet in this run, and waits for them (also for checks which were started by other threads).
+     */
+    public void verify() {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        final Map<String, Runnable> todo = new LinkedHashMap<>();
+        synchronized (this) {
+            checks.forEach((id, check) -> futures.add(verified.computeIfAbsent(id, k -> {
+                todo.put(k, check);
+                return new CompletableFuture<>();
+            })));
+        }
+        if (! todo.isEmpty()) {
+            log.info("{}: checking {}", name, todo.keySet());
+            final ExecutorService executor = Executors.newFixedThreadPool(todo.size());
+            try {
+                todo.forEach((id, check) -> executor.execute(() -> {
+                    final CompletableFuture<Void> future = verified.get(id);
+                    try {
+                        check.run();
+                        future.complete(null);
+                    } catch (RuntimeException e) {
+                        log.error("{}: {}: {}", name, id, e.getMessage(), e);
+                        verified.remove(id, future);
+                        future.complete(null);
+                    }
+                }));
+            } finally {
+                executor.shutdown();
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * The fixture will be checked again at the next call of {@link #verify()}
+     */
+    public void markDirty(String id) {
+        if (verified.remove(id) != null) {
+            log.info("{}: {} marked dirty", name, id);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + verified.keySet();
+    }
+}
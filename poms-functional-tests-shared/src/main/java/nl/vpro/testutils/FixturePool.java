@@ -0,0 +1,202 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import nl.vpro.junit.launcher.ShardedSuite;
+
+/**
+ * A pool of fixture objects (e.g. clips), so that test classes can each {@link #lease(String) lease} their own, rather than all changing the same one. That way they don't interfere, and can run at the same time.
+ *
+ * The ids of the fixtures are remembered in the {@link StateDirectory}, so they are normally only created once. {@link #release(String) Released} fixtures are marked dirty, and are reset in bulk when they are needed again, or at the start of the next run.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class FixturePool {
+
+    private static final String CLEAN = "clean";
+    private static final String DIRTY = "dirty";
+
+    private final String name;
+    private final int size;
+    private final Supplier<String> create;
+    private final Predicate<String> exists;
+    private final Consumer<String> reset;
+
+    private final Deque<String> clean = new ArrayDeque<>();
+    private final Set<String> dirty = new LinkedHashSet<>();
+    private final Map<String, String> leased = new LinkedHashMap<>();
+    private boolean warm = false;
+
+    /**
+     * @param name   The name of the pool, used for the file in the {@link StateDirectory}. Should contain the environment, if the fixtures are specific for that.
+     * @param size   The number of fixtures to create at warm up
+     * @param create Creates a new fixture, and returns its id
+     * @param exists Whether the fixture with the given id (still) exists
+     * @param reset  Brings the fixture back to its original state
+     */
+    public FixturePool(String name, int size, Supplier<String> create, Predicate<String> exists, Consumer<String> reset) {
+        this.name = name;
+        this.size = size;
+        this.create = create;
+        this.exists = exists;
+        this.reset = reset;
+    }
+
+    /**
+     * Takes a clean fixture out of the pool. If there is none, the dirty ones are reset first, and if that doesn't help either, a new one is created.
+     * @param holder Who leases the fixture. Only used for logging.
+     */
+    public synchronized String lease(String holder) {
+        warmUp();
+        if (clean.isEmpty() && ! dirty.isEmpty()) {
+            resetDirty();
+        }
+        final String id = clean.isEmpty() ? create.get() : clean.removeFirst();
+        leased.put(id, holder);
+        save();
+        log.info("{} leased {} from {}", holder, id, name);
+        return id;
+    }
+
+    /**
+     * Returns the fixture to the pool. It will be reset before it is leased again.
+     */
+    public synchronized void release(String id) {
+        String holder = leased.remove(id);
+        if (holder == null) {
+            log.warn("{} was not leased from {}", id, name);
+        }
+        dirty.add(id);
+        save();
+        log.info("{} released {}", holder, id);
+    }
+
+    /**
+     * Loads the known fixtures, resets the ones that were left dirty, and creates new ones until there are {@code size} of them. All in parallel.
+     */
+    public synchronized void warmUp() {
+        if (warm) {
+            return;
+        }
+        warm = true;
+        final Properties known = load();
+        final Set<String> ids = known.stringPropertyNames();
+        final Set<String> existing = forAll(ids, id -> {
+            if (! exists.test(id)) {
+                throw new IllegalStateException(id + " doesn't exist any more");
+            }
+            if (! CLEAN.equals(known.getProperty(id))) {
+                log.info("Resetting {}, which was left dirty", id);
+                reset.accept(id);
+            }
+        });
+        clean.addAll(existing);
+        final int missing = size - clean.size();
+        if (missing > 0) {
+            log.info("Creating {} fixtures for {}", missing, name);
+            final List<CompletableFuture<String>> created = new ArrayList<>();
+            final ExecutorService executor = Executors.newFixedThreadPool(missing);
+            try {
+                for (int i = 0; i < missing; i++) {
+                    created.add(CompletableFuture.supplyAsync(create, executor));
+                }
+                for (CompletableFuture<String> future : created) {
+                    try {
+                        clean.add(future.join());
+                    } catch (RuntimeException e) {
+                        log.warn("Could not create fixture for {}: {}", name, e.getMessage());
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+        save();
+        log.info("{}: {} fixtures available", name, clean.size());
+    }
+
+    protected void resetDirty() {
+        log.info("Resetting {} dirty fixtures of {}", dirty.size(), name);
+        clean.addAll(forAll(dirty, reset));
+        dirty.clear();
+    }
+
+    /**
+     * Performs the action for all ids at the same time.
+     * @return The ids for which it succeeded
+     */
+    private Set<String> forAll(Collection<String> ids, Consumer<String> action) {
+        if (ids.isEmpty()) {
+            return new LinkedHashSet<>();
+        }
+        final Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(ids.size());
+        try {
+            for (String id : ids) {
+                futures.put(id, CompletableFuture.runAsync(() -> action.accept(id), executor));
+            }
+            final Set<String> succeeded = new LinkedHashSet<>();
+            futures.forEach((id, future) -> {
+                try {
+                    future.join();
+                    succeeded.add(id);
+                } catch (RuntimeException e) {
+                    log.warn("{}: dropping {} ({})", name, id, e.getMessage());
+                }
+            });
+            return succeeded;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Every {@link nl.vpro.junit.launcher.ShardedSuite shard} has its own pool, so they never lease the same fixture.
+     */
+    private String file() {
+        return "fixtures-" + name + System.getProperty(ShardedSuite.SHARD_PROPERTY, "") + ".properties";
+    }
+
+    private Properties load() {
+        try {
+            return StateDirectory.read(file());
+        } catch (IOException e) {
+            log.warn("Could not read {}: {}", file(), e.getMessage());
+            return new Properties();
+        }
+    }
+
+    /**
+     * Leased fixtures are stored as dirty, so that they are reset in the next run if this one is interrupted.
+     */
+    private void save() {
+        Properties properties = new Properties();
+        clean.forEach(id -> properties.setProperty(id, CLEAN));
+        dirty.forEach(id -> properties.setProperty(id, DIRTY));
+        leased.keySet().forEach(id -> properties.setProperty(id, DIRTY));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            properties.store(new OutputStreamWriter(out, StandardCharsets.UTF_8), "fixtures of " + name);
+            StateDirectory.write(file(), out.toByteArray());
+        } catch (IOException e) {
+            log.warn("Could not save {}: {}", file(), e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + " (" + clean.size() + " clean, " + leased.size() + " leased, " + dirty.size() + " dirty)";
+    }
+}
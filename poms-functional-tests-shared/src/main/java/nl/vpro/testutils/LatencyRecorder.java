@@ -0,0 +1,243 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+/**
+ * Records latencies of requests which were scheduled to be sent at a certain time, in HdrHistograms.
+ *
+ * The latency is measured from the <em>intended</em> send time, not from the moment the request actually went out. If the server (or the client) stalls, the requests which should have been sent meanwhile are delayed, and that delay is part of what a user would have experienced. Measuring from the actual send time would hide exactly the slow periods (coordinated omission). The time from the actual send time (the service time) is recorded too, so the two can be compared.
+ *
+ * The latencies of failed requests are recorded separately, so that fast errors don't make the latencies look better than they are, and slow errors (time outs) are still visible.
+ *
+ * Latencies are recorded in microseconds.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class LatencyRecorder {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = Duration.ofMinutes(10).toNanos() / 1000;
+
+    private final String name;
+    private final Map<String, Statistics> statistics = new ConcurrentSkipListMap<>();
+    private final long startMillis = System.currentTimeMillis();
+
+    /**
+     * @param name Used for the file names of the report
+     */
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Performs the call, and records its latency since {@code intendedNanos} (a {@link System#nanoTime()} value), as a success or as an error.
+     * @throws RuntimeException if the call did
+     */
+    public <T> T time(String key, long intendedNanos, Supplier<T> call) {
+        final long start = System.nanoTime();
+        try {
+            T result = call.get();
+            record(key, intendedNanos, start, System.nanoTime());
+            return result;
+        } catch (RuntimeException e) {
+            recordError(key, intendedNanos, System.nanoTime());
+            throw e;
+        }
+    }
+
+    /**
+     * @param intendedNanos When the request should have been sent
+     * @param startNanos    When it was actually sent
+     * @param endNanos      When the response was received
+     */
+    public void record(String key, long intendedNanos, long startNanos, long endNanos) {
+        final Statistics s = get(key);
+        s.responseTime.recordValue(micros(endNanos - Math.min(intendedNanos, startNanos)));
+        s.serviceTime.recordValue(micros(endNanos - startNanos));
+    }
+
+    /**
+     * Records a failed request (or one that was never sent at all), and its latency since the intended send time
+     */
+    public void recordError(String key, long intendedNanos, long endNanos) {
+        final Statistics s = get(key);
+        s.errorTime.recordValue(micros(endNanos - intendedNanos));
+        s.errors.incrementAndGet();
+    }
+
+    /**
+     * @return Copies of the histograms of the latencies since the intended send times, per key
+     */
+    public Map<String, Histogram> getHistograms() {
+        final Map<String, Histogram> result = new TreeMap<>();
+        statistics.forEach((k, v) -> result.put(k, v.responseTime.copy()));
+        return result;
+    }
+
+    /**
+     * @return Copies of the histograms of the latencies of failed requests, per key
+     */
+    public Map<String, Histogram> getErrorHistograms() {
+        final Map<String, Histogram> result = new TreeMap<>();
+        statistics.forEach((k, v) -> result.put(k, v.errorTime.copy()));
+        return result;
+    }
+
+    /**
+     * @return Copies of the histograms of the latencies of all requests, successful or not, per key
+     */
+    public Map<String, Histogram> getAllHistograms() {
+        final Map<String, Histogram> result = new TreeMap<>();
+        statistics.forEach((k, v) -> result.put(k, v.all()));
+        return result;
+    }
+
+    /**
+     * @return The latencies since the intended send times of the successful requests, of all keys together
+     */
+    public Histogram getTotal() {
+        final Histogram total = new Histogram(1, HIGHEST_TRACKABLE_MICROS, 3);
+        statistics.values().forEach(s -> total.add(s.responseTime));
+        return total;
+    }
+
+    /**
+     * @return At most {@code count} keys with the highest latency at the given percentile, highest first. Failed requests count too (see {@link #getAllHistograms()}), since they took the time of a user as well.
+     */
+    public List<String> getSlowest(int count, double percentile) {
+        final Map<String, Long> latencies = new HashMap<>();
+        statistics.forEach((k, v) -> {
+            if (v.count() > 0) {
+                latencies.put(k, v.all().getValueAtPercentile(percentile));
+            }
+        });
+        return latencies.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(count)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The number of requests (successful or not)
+     */
+    public long getCount() {
+        return statistics.values().stream().mapToLong(Statistics::count).sum();
+    }
+
+    public long getErrors() {
+        return statistics.values().stream().mapToLong(s -> s.errors.get()).sum();
+    }
+
+    /**
+     * Logs count, throughput, error rate and latency percentiles per key, and writes them to {@code <name>.txt} in the {@link WaitStatistics#getReportDirectory() report directory}. The histograms themselves are written to {@code <name>.hlog}, which can be read with e.g. HistogramLogAnalyzer.
+     *
+     * @param elapsed The duration of the measurement, to calculate the throughput
+     */
+    public String report(Duration elapsed) {
+        final double seconds = Math.max(1, elapsed.toMillis()) / 1000.0;
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-60s %7s %8s %7s %9s %9s %9s %9s %9s %11s %9s%n", "operation", "count", "req/s", "errors", "p50", "p95", "p99", "p99.9", "max", "service p99", "error p99"));
+        statistics.forEach((key, s) -> {
+            final Histogram h = s.responseTime.copy();
+            final long count = s.count();
+            builder.append(String.format("%-60s %7d %8.1f %6.1f%% %9s %9s %9s %9s %9s %11s %9s%n",
+                key,
+                count,
+                count / seconds,
+                count == 0 ? 0.0 : 100.0 * s.errors.get() / count,
+                millis(h, 50),
+                millis(h, 95),
+                millis(h, 99),
+                millis(h, 99.9),
+                millis(h, 100),
+                millis(s.serviceTime.copy(), 99),
+                millis(s.errorTime.copy(), 99)
+            ));
+        });
+        log.info("{} (latencies in ms, since intended send time, of successful requests unless stated otherwise):\n{}", name, builder);
+        final Path dir = WaitStatistics.getReportDirectory();
+        try {
+            Files.createDirectories(dir);
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(dir.resolve(name + ".txt"), StandardCharsets.UTF_8))) {
+                writer.print(builder);
+            }
+            try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(name + ".hlog")), false, StandardCharsets.UTF_8.name())) {
+                final HistogramLogWriter writer = new HistogramLogWriter(out);
+                writer.outputLogFormatVersion();
+                writer.outputStartTime(startMillis);
+                writer.outputLegend();
+                final long endMillis = System.currentTimeMillis();
+                statistics.forEach((key, s) -> {
+                    final Histogram h = s.responseTime.copy();
+                    h.setTag(key.replaceAll("[\\s,]", "_"));
+                    h.setStartTimeStamp(startMillis);
+                    h.setEndTimeStamp(endMillis);
+                    writer.outputIntervalHistogram(h);
+                    if (s.errorTime.getTotalCount() > 0) {
+                        final Histogram e = s.errorTime.copy();
+                        e.setTag(h.getTag() + "_errors");
+                        e.setStartTimeStamp(startMillis);
+                        e.setEndTimeStamp(endMillis);
+                        writer.outputIntervalHistogram(e);
+                    }
+                });
+            }
+            log.info("Wrote {}", dir.resolve(name + ".txt").toAbsolutePath());
+        } catch (IOException ioe) {
+            log.warn("Could not write report {} in {}: {}", name, dir, ioe.getMessage());
+        }
+        return builder.toString();
+    }
+
+    static String millis(Histogram h, double percentile) {
+        if (h.getTotalCount() == 0) {
+            return "-";
+        }
+        return String.format("%.1f", h.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    private static long micros(long nanos) {
+        return Math.max(1, Math.min(HIGHEST_TRACKABLE_MICROS, nanos / 1000));
+    }
+
+    private Statistics get(String key) {
+        return statistics.computeIfAbsent(key, k -> new Statistics());
+    }
+
+    private static class Statistics {
+        final Histogram responseTime = new ConcurrentHistogram(1, HIGHEST_TRACKABLE_MICROS, 3);
+        final Histogram serviceTime = new ConcurrentHistogram(1, HIGHEST_TRACKABLE_MICROS, 3);
+        final Histogram errorTime = new ConcurrentHistogram(1, HIGHEST_TRACKABLE_MICROS, 3);
+        final AtomicLong errors = new AtomicLong();
+
+        long count() {
+            return responseTime.getTotalCount() + errors.get();
+        }
+
+        Histogram all() {
+            final Histogram all = new Histogram(1, HIGHEST_TRACKABLE_MICROS, 3);
+            all.add(responseTime);
+            all.add(errorTime);
+            return all;
+        }
+    }
+}
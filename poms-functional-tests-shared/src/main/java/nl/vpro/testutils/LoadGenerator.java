@@ -0,0 +1,198 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Generates load with an open model: requests are started at a fixed rate, whether or not earlier requests are finished. So, unlike a fixed number of threads calling one after another, it doesn't slow down when the server slows down, just like real users don't.
+ *
+ * Every request is one of the {@link #operation(String, double, Runnable) operations}, chosen at random according to their weights. The latencies are recorded per operation by a {@link LatencyRecorder}, so they are measured from the time the request was scheduled, also if it had to wait for a free thread. They are {@link #report() reported} with throughput, error rate and percentiles.
+ *
+ * Requests that are not finished when the load stops (a minute after the last one was due) are recorded as errors, with the time since their intended send time as latency, because that is what they would have cost a user at least. Those still waiting for a thread are not sent anymore, the others are interrupted, and if they finish after all, that is ignored.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class LoadGenerator {
+
+    /**
+     * Matches a positive number, like {@code 2} or {@code 0.5}. Useful to enable load tests only if a rate is given, e.g. with {@link org.junit.jupiter.api.condition.EnabledIfSystemProperty}.
+     */
+    public static final String POSITIVE_NUMBER = "0*([1-9]\\d*(\\.\\d+)?|\\.\\d*[1-9]\\d*)";
+
+    private final String name;
+    private final double rate;
+    private final Duration duration;
+    private final int maxConcurrency;
+    private final List<Operation> operations = new ArrayList<>();
+    private final LatencyRecorder recorder;
+    private double totalWeight = 0;
+    private Duration elapsed = Duration.ZERO;
+
+    /**
+     * @param name           Used for the file name of the report
+     * @param rate           The number of requests to start per second
+     * @param duration       How long to generate load
+     * @param maxConcurrency The maximal number of requests in progress. If more requests are due, they wait.
+     * @throws IllegalArgumentException if the rate or the maximal concurrency is not positive
+     */
+    public LoadGenerator(String name, double rate, Duration duration, int maxConcurrency) {
+        if (! (rate > 0)) {
+            throw new IllegalArgumentException("The rate of " + name + " must be positive, but is " + rate);
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximal concurrency of " + name + " must be at least 1, but is " + maxConcurrency);
+        }
+        this.name = name;
+        this.rate = rate;
+        this.duration = duration;
+        this.maxConcurrency = maxConcurrency;
+        this.recorder = new LatencyRecorder("load-" + name);
+    }
+
+    /**
+     * @param name   The name under which the latencies are reported, e.g. {@code load vpro/json/all}
+     * @param weight The relative frequency of this operation
+     * @param action Performs one request. Throws an exception if it fails.
+     */
+    public LoadGenerator operation(String name, double weight, Runnable action) {
+        operations.add(new Operation(name, weight, action));
+        totalWeight += weight;
+        return this;
+    }
+
+    /**
+     * Generates the load, and waits until all requests are finished, but at most a minute after the last one was due. Requests that are not finished by then are recorded as errors.
+     */
+    public LoadGenerator run() throws InterruptedException {
+        if (operations.isEmpty()) {
+            throw new IllegalStateException("No operations for " + name);
+        }
+        final long interval = (long) (1_000_000_000L / rate);
+        final long count = duration.toNanos() / interval;
+        final Random random = new Random(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(maxConcurrency);
+        final Set<Request> unfinished = ConcurrentHashMap.newKeySet();
+        log.info("{}: starting {} requests in {} ({}/s, at most {} at the same time)", name, count, duration, rate, maxConcurrency);
+        final long start = System.nanoTime();
+        try {
+            for (long i = 0; i < count; i++) {
+                final long intended = start + i * interval;
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                final Request request = new Request(choose(random.nextDouble() * totalWeight), intended, unfinished);
+                unfinished.add(request);
+                executor.execute(request);
+            }
+        } finally {
+            executor.shutdown();
+            if (! executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                final int notStarted = executor.shutdownNow().size();
+                final long now = System.nanoTime();
+                int count = 0;
+                for (Request request : unfinished) {
+                    // whoever removes it, records it. So requests which finish after this are ignored
+                    if (unfinished.remove(request)) {
+                        recorder.recordError(request.operation.name, request.intended, now);
+                        count++;
+                    }
+                }
+                log.warn("{}: {} requests did not finish in time, {} of them were not even started", name, count, notStarted);
+            }
+        }
+        elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return this;
+    }
+
+    private class Request implements Runnable {
+        final Operation operation;
+        final long intended;
+        final Set<Request> unfinished;
+
+        Request(Operation operation, long intended, Set<Request> unfinished) {
+            this.operation = operation;
+            this.intended = intended;
+            this.unfinished = unfinished;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            boolean success = false;
+            try {
+                operation.action.run();
+                success = true;
+            } catch (RuntimeException e) {
+                log.debug("{}: {}", operation.name, e.getMessage());
+            } finally {
+                final long end = System.nanoTime();
+                // if not, it was already recorded as unfinished
+                if (unfinished.remove(this)) {
+                    if (success) {
+                        recorder.record(operation.name, intended, start, end);
+                    } else {
+                        recorder.recordError(operation.name, intended, end);
+                    }
+                }
+            }
+        }
+    }
+
+    private Operation choose(double r) {
+        for (Operation o : operations) {
+            r -= o.weight;
+            if (r < 0) {
+                return o;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    /**
+     * @return Copies of the histograms of the latencies (in microseconds, since the intended send time), per operation
+     */
+    public Map<String, Histogram> getHistograms() {
+        return recorder.getHistograms();
+    }
+
+    public LatencyRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * @return The number of finished requests (successful or not) per second, during the last run
+     */
+    public double getThroughput() {
+        return elapsed.isZero() ? 0 : recorder.getCount() * 1_000_000_000.0 / elapsed.toNanos();
+    }
+
+    /**
+     * Logs throughput, error rate and latency percentiles per operation, and writes them to {@code load-<name>.txt} in the {@link WaitStatistics#getReportDirectory() report directory} (see {@link LatencyRecorder#report(Duration)}).
+     */
+    public String report() {
+        final String report = recorder.report(elapsed);
+        log.info("{}: {} requests in {}, {}/s (intended {}/s)", name, recorder.getCount(), elapsed, String.format("%.1f", getThroughput()), rate);
+        return report;
+    }
+
+    private static class Operation {
+        final String name;
+        final double weight;
+        final Runnable action;
+
+        Operation(String name, double weight, Runnable action) {
+            this.name = name;
+            this.weight = weight;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package nl.vpro.testutils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * A directory where information is kept between runs of the functional tests (e.g. how long publication normally takes). Defaults to {@code ~/.npo-functional-tests}, and can be configured with the system property {@value #PROPERTY}.
+ *
+ * Several JVMs (e.g. {@link nl.vpro.junit.launcher.ShardedSuite shards}) may use the same state directory at the same time, so files which they all change must be changed with {@link #update(String, String, Consumer)}.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+public class StateDirectory {
+
+    public static final String PROPERTY = "functional-tests.state.dir";
+
+    private StateDirectory() {
+    }
+
+    public static Path get() {
+        Path dir = Paths.get(System.getProperty(PROPERTY, System.getProperty("user.home") + "/.npo-functional-tests"));
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return dir;
+    }
+
+    public static Path resolve(String name) {
+        return get().resolve(name);
+    }
+
+    /**
+     * @return The properties stored in the given file, or empty properties if the file does not exist
+     */
+    public static Properties read(String name) throws IOException {
+        final Properties properties = new Properties();
+        final Path file = resolve(name);
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Reads the properties in the given file, lets {@code update} change them, and writes them back, while other JVMs are locked out. So changes of other JVMs since this one read the file are not lost, as long as {@code update} only changes what this JVM knows about.
+     */
+    public static synchronized void update(String name, String comments, Consumer<Properties> update) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(name + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            final Properties properties = read(name);
+            update.accept(properties);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            properties.store(new OutputStreamWriter(out, StandardCharsets.UTF_8), comments);
+            write(name, out.toByteArray());
+        }
+    }
+
+    /**
+     * Writes a file in the state directory, such that readers never see a half written file
+     */
+    public static void write(String name, byte[] content) throws IOException {
+        Path file = resolve(name);
+        Path temp = Files.createTempFile(file.getParent(), name, ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
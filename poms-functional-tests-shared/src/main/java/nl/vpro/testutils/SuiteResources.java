@@ -0,0 +1,65 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Resources (mainly clients, with their connection pools) which live as long as the test suite, and not only as long as one test class. Every configuration is created once, via {@link #get(String, Supplier)}, and shared by all classes that need it.
+ *
+ * Everything is closed at the end of the launcher session by {@link nl.vpro.junit.extensions.SuiteResourcesListener}, so test classes should not close these themselves.
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class SuiteResources {
+
+    private static final Map<String, AutoCloseable> RESOURCES = new LinkedHashMap<>();
+
+    private SuiteResources() {
+    }
+
+    /**
+     * @param key    Identifies the configuration of the resource, e.g. {@code media/vpro/application/json/all}
+     * @param create Creates the resource if there is none for this key yet
+     * @return The resource for the given key
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <T extends AutoCloseable> T get(String key, Supplier<T> create) {
+        return (T) RESOURCES.computeIfAbsent(key, k -> {
+            T resource = create.get();
+            log.debug("Created {}: {}", k, resource);
+            return resource;
+        });
+    }
+
+    /**
+     * Registers a resource which is created elsewhere (e.g. in a static field), so that it is closed at the end of the suite too. Such a resource is not created again after {@link #closeAll()}, so it can't be used anymore after that.
+     */
+    public static synchronized <T extends AutoCloseable> T register(String key, T resource) {
+        RESOURCES.put(key, resource);
+        return resource;
+    }
+
+    /**
+     * Closes all resources, in the reverse order of creation. Resources that are needed again afterwards are created anew by {@link #get(String, Supplier)}, but {@link #register(String, AutoCloseable) registered} ones stay closed. So this is only to be called at the end of the suite.
+     */
+    public static synchronized void closeAll() {
+        if (RESOURCES.isEmpty()) {
+            return;
+        }
+        final List<Map.Entry<String, AutoCloseable>> entries = new ArrayList<>(RESOURCES.entrySet());
+        Collections.reverse(entries);
+        for (Map.Entry<String, AutoCloseable> e : entries) {
+            try {
+                e.getValue().close();
+            } catch (Exception ex) {
+                log.warn("Could not close {}: {} {}", e.getKey(), ex.getClass().getName(), ex.getMessage());
+            }
+        }
+        log.info("Closed {} suite resources", entries.size());
+        RESOURCES.clear();
+    }
+}
@@ -5,12 +5,16 @@ import lombok.extern.log4j.Log4j2;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.concurrent.Callable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.*;
 import java.util.stream.Collectors;
 
+import org.apache.logging.log4j.ThreadContext;
+
+import nl.vpro.junit.extensions.TestMDC;
 import nl.vpro.util.TextUtil;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -22,52 +26,238 @@ import static org.assertj.core.api.Assertions.assertThat;
 @Log4j2
 public class Utils {
 
-    private final static Duration WAIT = Duration.ofSeconds(15);
-
     public static final ThreadLocal<Runnable> CLEAR_CACHES = ThreadLocal.withInitial((Supplier<Runnable>) () -> () -> {});
 
-    private static void waitUntil(Duration acceptable, Callable<Boolean> r)  {
-        CLEAR_CACHES.get().run();
-        Instant start = Instant.now();
+    /**
+     * The {@link Check#getCategory() category} of waits which don't specify one, e.g. "media backend" for all waits in tests on the backend. If not set, the class of the current test is used (see {@link #defaultCategory()}).
+     */
+    public static final ThreadLocal<String> CATEGORY = new ThreadLocal<>();
+
+    /**
+     * The {@link Backoff} used if not explicitly specified. Starts probing after one second, and then backs off until probing every 15 seconds.
+     */
+    private static volatile Backoff defaultBackoff = Backoff.exponential()
+        .min(Duration.ofSeconds(1))
+        .max(Duration.ofSeconds(15))
+        .build();
+
+    public static Backoff getDefaultBackoff() {
+        return defaultBackoff;
+    }
+
+    public static void setDefaultBackoff(Backoff backoff) {
+        defaultBackoff = Objects.requireNonNull(backoff);
+    }
+
+    /**
+     * If a wait can be woken up (see {@link Check#getWakeUp()}), it doesn't need to poll often. Polling is then only a fall back.
+     */
+    private static final Backoff WAKE_UP_FALLBACK = Backoff.exponential()
+        .min(Duration.ofSeconds(1))
+        .max(Duration.ofMinutes(2))
+        .build();
+
+    /**
+     * Only fires the timers of all waits. The evaluations themselves are mostly blocking http calls, so they are handed over to an executor (see {@link #EVALUATIONS}), and never run here. Otherwise they would wait for each other, and that waiting would be counted as time until arrival.
+     */
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(daemons("waitUntil-timer-"));
+
+    /**
+     * The evaluations of {@link #waitUntilAsync(Duration, Supplier, Check[]) asynchronous waits}. Unbounded, so an evaluation never has to wait for a free thread.
+     */
+    private static final ExecutorService EVALUATIONS = Executors.newCachedThreadPool(daemons("waitUntil-"));
+
+    private static ThreadFactory daemons(String prefix) {
+        final AtomicInteger number = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Runs {@link #_waitUntilAsync(Duration, Backoff, Supplier, String, Executor, Callable) the asynchronous wait}, with the evaluations on the calling thread, until it is done. So there is only one implementation of the evaluation loop.
+     */
+    private static void _waitUntil(Duration acceptable, Backoff backoff, Supplier<? extends Future<?>> wakeUp, String category, Callable<Boolean> r)  {
+        final BlockingQueue<Runnable> evaluations = new LinkedBlockingQueue<>();
+        final CompletableFuture<Void> future = _waitUntilAsync(acceptable, backoff, wakeUp, category, evaluations::add, r);
+        // wakes up the loop below, if the wait is completed otherwise
+        future.whenComplete((v, t) -> evaluations.add(() -> {}));
         try {
-            Thread.sleep(Duration.ofSeconds(1).toMillis());
-            while (true) {
-                boolean result = false;
+            while (! future.isDone()) {
+                evaluations.take().run();
+            }
+        } catch (InterruptedException ie) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        }
+        await(future);
+    }
+
+    /**
+     * Evaluates {@code r} until it is true, or until the acceptable duration (or the remaining {@link Deadline}) is spent. The evaluations happen on the given executor, in the context (caches to clear, logging context) of the calling thread.
+     */
+    private static CompletableFuture<Void> _waitUntilAsync(Duration acceptable, Backoff backoff, Supplier<? extends Future<?>> wakeUp, String category, Executor executor, Callable<Boolean> r)  {
+        final Runnable clearCaches = CLEAR_CACHES.get();
+        final Map<String, String> logContext = ThreadContext.getImmutableContext();
+        final Optional<Deadline> deadline = Deadline.current();
+        final Duration limit = deadline.map(d -> d.limit(acceptable)).orElse(acceptable);
+        final Instant start = Instant.now();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final AtomicInteger attempt = new AtomicInteger(0);
+
+        final Runnable evaluation = new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    // e.g. cancelled
+                    return;
+                }
+                final Runnable previousClearCaches = CLEAR_CACHES.get();
+                final Map<String, String> previousLogContext = ThreadContext.getImmutableContext();
+                CLEAR_CACHES.set(clearCaches);
+                ThreadContext.putAll(logContext);
                 try {
-                    result = r.call();
+                    boolean result = false;
+                    try {
+                        result = r.call();
+                    } catch (Throwable t) {
+                        log.warn(t.getMessage(), t);
+                    }
+                    int attempts = attempt.incrementAndGet();
+                    Duration duration = Duration.between(start, Instant.now());
+                    if (result) {
+                        log.info("{} evaluated true after {}", r, duration);
+                        WaitStatistics.recordSuccess(category, duration);
+                        ArrivalModel.getInstance().record(category, duration);
+                        deadline.ifPresent(d -> d.spent(r.toString(), duration, true));
+                        future.complete(null);
+                        return;
+                    }
+                    if (duration.compareTo(limit) >= 0) {
+                        WaitStatistics.recordTimeout(category, duration);
+                        deadline.ifPresent(d -> d.spent(r.toString(), duration, false));
+                        future.completeExceptionally(new AssertionError(failureMessage(r, duration, acceptable, limit, deadline)));
+                        return;
+                    }
+                    Duration wait = nextWait(backoff, attempts, duration, limit);
+                    log.info("{} didn't evaluate to true yet after {} (< {}, attempt {}). Waiting {}{}", r, duration, limit, attempts, wakeUp == null ? "another " : "for a change, at most ", wait);
+                    schedule(this, wait, wakeUp, executor);
                 } catch (Throwable t) {
-                    log.warn(t.getMessage(), t);
-                }
-                if (result) {
-                    log.info("{} evaluated true", r);
-                    assertThat(result).isTrue();
-                    return;
+                    future.completeExceptionally(t);
+                } finally {
+                    CLEAR_CACHES.set(previousClearCaches);
+                    ThreadContext.clearMap();
+                    ThreadContext.putAll(previousLogContext);
                 }
-                Duration duration = Duration.between(start, Instant.now());
-                if (duration.compareTo(acceptable) > 0) {
-                    // this would fail, intentionally, because we are too late
-                    //noinspection ConstantConditions
-                    assertThat(result)
-                        .withFailMessage("%s didn't evaluate to true after %s in less than %s", r, duration, acceptable)
-                        .isTrue();
+            }
+        };
+        SCHEDULER.schedule(() -> executor.execute(evaluation), nextWait(backoff, 0, Duration.ZERO, limit).toMillis(), TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private static String failureMessage(Callable<Boolean> r, Duration duration, Duration acceptable, Duration limit, Optional<Deadline> deadline) {
+        if (limit.compareTo(acceptable) < 0 && deadline.isPresent()) {
+            return String.format("%s didn't evaluate to true after %s. It would have been acceptable to wait %s, but only %s was left. %s", r, duration, acceptable, limit, deadline.get().report());
+        }
+        return String.format("%s didn't evaluate to true after %s in less than %s", r, duration, acceptable);
+    }
+
+    private static Duration nextWait(Backoff backoff, int attempt, Duration duration, Duration acceptable) {
+        Duration wait = backoff.delay(attempt, duration);
+        Duration remaining = acceptable.minus(duration);
+        if (wait.compareTo(remaining) > 0) {
+            // make sure we evaluate one last time around the deadline, and not only well after it
+            wait = remaining;
+        }
+        return wait;
+    }
+
+    /**
+     * Runs the job on the executor after {@code wait}, or earlier if woken up. Doesn't block.
+     */
+    private static void schedule(Runnable job, Duration wait, Supplier<? extends Future<?>> wakeUp, Executor executor) {
+        final Future<?> signal = wakeUp == null ? null : wakeUp.get();
+        final AtomicBoolean started = new AtomicBoolean(false);
+        final Runnable once = () -> {
+            if (started.compareAndSet(false, true)) {
+                if (signal != null) {
+                    signal.cancel(false);
                 }
-                log.info("{} didn't evaluate to true yet after {} (< {}). Waiting another {}", r, duration, acceptable, WAIT);
-                Thread.sleep(WAIT.toMillis());
+                job.run();
             }
-        } catch (RuntimeException rte) {
-            throw rte;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        };
+        final ScheduledFuture<?> timer = SCHEDULER.schedule(() -> executor.execute(once), wait.toMillis(), TimeUnit.MILLISECONDS);
+        if (signal instanceof CompletionStage) {
+            ((CompletionStage<?>) signal).whenComplete((v, t) -> {
+                if (t == null) {
+                    timer.cancel(false);
+                    executor.execute(once);
+                }
+            });
         }
     }
 
     public static void waitUntil(Duration acceptable, Supplier<String> callableToDescription, final Callable<Boolean> r)  {
+        final String category = defaultCategory();
+        waitUntil(acceptable, ArrivalModel.getInstance().backoff(category, defaultBackoff), null, category, callableToDescription, r);
+    }
+
+    /**
+     * As {@link #waitUntil(Duration, Supplier, Callable)}, but with an explicit {@link Backoff}
+     */
+    public static void waitUntil(Duration acceptable, Backoff backoff, Supplier<String> callableToDescription, final Callable<Boolean> r)  {
+        waitUntil(acceptable, backoff, null, defaultCategory(), callableToDescription, r);
+    }
+
+    /**
+     * As {@link #waitUntil(Duration, String, Callable)}, but with an explicit {@link Check#getCategory() category}
+     */
+    public static void waitUntil(Duration acceptable, String category, String callableToDescription, final Callable<Boolean> r)  {
+        waitUntil(acceptable, ArrivalModel.getInstance().backoff(category, defaultBackoff), null, category, () -> callableToDescription, r);
+    }
+
+    private static void waitUntil(Duration acceptable, Backoff backoff, Supplier<? extends Future<?>> wakeUp, String category, Supplier<String> callableToDescription, final Callable<Boolean> r)  {
         log.info("Waiting until " + callableToDescription.get());
-        waitUntil(acceptable, new Callable<>() {
+        _waitUntil(acceptable, backoff, wakeUp, category, describe(callableToDescription, r));
+    }
+
+    private static CompletableFuture<Void> waitUntilAsync(Duration acceptable, Backoff backoff, Supplier<? extends Future<?>> wakeUp, String category, Supplier<String> callableToDescription, final Callable<Boolean> r)  {
+        log.info("Waiting (asynchronously) until " + callableToDescription.get());
+        return _waitUntilAsync(acceptable, backoff, wakeUp, category, EVALUATIONS, describe(callableToDescription, r));
+    }
+
+    private static void clearCaches() {
+        CLEAR_CACHES.get().run();
+    }
+
+    /**
+     * The category of waits which don't specify one: {@link #CATEGORY}, or otherwise the class of the current test. Descriptions are not used, because they mostly contain MIDs, titles or time stamps, so that every wait would be in a category of its own.
+     */
+    static String defaultCategory() {
+        final String category = CATEGORY.get();
+        if (category != null) {
+            return category;
+        }
+        final String test = ThreadContext.get(TestMDC.KEY);
+        if (test != null) {
+            final int hash = test.indexOf('#');
+            return hash < 0 ? test : test.substring(0, hash);
+        }
+        return "uncategorized";
+    }
+
+    /**
+     * Wraps {@code r}, so that all caches are cleared before every evaluation, and no stale values are used
+     */
+    private static Callable<Boolean> describe(Supplier<String> callableToDescription, final Callable<Boolean> r) {
+        return new Callable<>() {
             @Override
             public Boolean call() throws Exception {
                 try {
-                    CLEAR_CACHES.get().run();
+                    clearCaches();
                     return r.call();
                 } catch (Exception e) {
                     log.error(e.getMessage(), e);
@@ -78,8 +268,7 @@ public class Utils {
             public String toString() {
                 return "(" + callableToDescription.get() + ")";
             }
-        });
-
+        };
     }
 
 
@@ -87,6 +276,20 @@ public class Utils {
         waitUntil(acceptable, () -> callableToDescription, r);
     }
 
+    /**
+     * As {@link #waitUntil(Duration, String, Callable)}, but doesn't block. Use e.g. {@link #awaitAll(CompletableFuture[])} to wait for several of these at once.
+     */
+    public static CompletableFuture<Void> waitUntilAsync(Duration acceptable, String callableToDescription, final Callable<Boolean> r)  {
+        return waitUntilAsync(acceptable, defaultCategory(), callableToDescription, r);
+    }
+
+    /**
+     * As {@link #waitUntilAsync(Duration, String, Callable)}, but with an explicit {@link Check#getCategory() category}
+     */
+    public static CompletableFuture<Void> waitUntilAsync(Duration acceptable, String category, String callableToDescription, final Callable<Boolean> r)  {
+        return waitUntilAsync(acceptable, ArrivalModel.getInstance().backoff(category, defaultBackoff), null, category, () -> callableToDescription, r);
+    }
+
     public static <T> T waitUntilNotNull(Duration acceptable, Supplier<T> r) {
         return waitUntilNotNull(acceptable, r + " != null", r);
     }
@@ -104,6 +307,22 @@ public class Utils {
     }
 
 
+    /**
+     * As {@link #waitUntil(Duration, String, Supplier, Predicate)}, but with an explicit {@link Check#getCategory() category}
+     */
+    public static <T> T waitUntil(
+        Duration acceptable,
+        String category,
+        String predicateDescription,
+        Supplier<T> r,
+        Predicate<T> predicate) {
+        return waitUntil(acceptable, r, Check.<T>builder()
+            .predicate(predicate)
+            .description(predicateDescription)
+            .category(category)
+            .build());
+    }
+
     @SafeVarargs
     public static <T> T waitUntils(
         Duration acceptable,
@@ -134,48 +353,29 @@ public class Utils {
     /**
      * @param resultSupplier The code to produce a result. This will be repeated until it doesn't return <code>null</code> or until the acceptable duration expires.
      */
-     @SuppressWarnings("unchecked")
      @SafeVarargs
      public static <T> T waitUntil(
         Duration acceptable,
         Supplier<T> resultSupplier,
         Check<T>... tests) {
-         final T[] result = (T[]) new Object[1];
-         final String[] predicateDescription = new String[1];
-         predicateDescription[0] = Arrays.stream(tests).map(t -> t.description).collect(Collectors.joining(" AND "));
-         waitUntil(acceptable, () -> predicateDescription[0], new Callable<>() {
-             @Override
-             public Boolean call() {
-                 CLEAR_CACHES.get().run();
-                 result[0] = resultSupplier.get();
-                 if (result[0] == null) {
-                     return false;
-                 }
-                 boolean success = true;
-                 StringBuilder description = new StringBuilder();
-                 for (Check<T> t : tests) {
-                     boolean test = t.predicate.test(result[0]);
-                     success &= test;
-                     if (description.length() > 0) {
-                         description.append(" AND ");
-                     }
-                     description.append(test ? TextUtil.strikeThrough(t.description) : t.description);
-
-                 }
-                 predicateDescription[0] = description.toString();
-                 return success;
-             }
-
-             @Override
-             public String toString() {
-                 return Arrays.asList(tests) + " supplies: " + resultSupplier + " current value: " + result[0];
-             }
-         });
-        assertThat(result[0]).withFailMessage(predicateDescription[0] + ":" + resultSupplier + "supplied null").isNotNull();
-        for (Check<T> t : tests) {
-            assertThat(t.predicate.test(result[0])).withFailMessage(t.failureDescription.apply(result[0])).isTrue();
-        }
-        return result[0];
+         final Checks<T> checks = new Checks<>(resultSupplier, tests);
+         waitUntil(acceptable, checks.getBackoff(), checks.getWakeUp(), checks.getCategory(), checks::getDescription, checks);
+         return checks.verify();
+    }
+
+    /**
+     * As {@link #waitUntil(Duration, Supplier, Check[])}, but doesn't block. The returned future completes with the result, or exceptionally with the {@link AssertionError} the blocking version would have thrown.
+     *
+     * Independent waits can so happen simultaneously, so the total time waited is the longest of them, and not their sum. See {@link #awaitAll(CompletableFuture[])}.
+     */
+    @SafeVarargs
+    public static <T> CompletableFuture<T> waitUntilAsync(
+        Duration acceptable,
+        Supplier<T> resultSupplier,
+        Check<T>... tests) {
+        final Checks<T> checks = new Checks<>(resultSupplier, tests);
+        return waitUntilAsync(acceptable, checks.getBackoff(), checks.getWakeUp(), checks.getCategory(), checks::getDescription, checks)
+            .thenApply(v -> checks.verify());
     }
 
     @SuppressWarnings("unchecked")
@@ -188,6 +388,16 @@ public class Utils {
          return waitUntil(acceptable, resultSupplier, args);
     }
 
+    @SuppressWarnings("unchecked")
+    @SafeVarargs
+    public static <T> CompletableFuture<T> waitUntilAsync(
+        Duration acceptable,
+        Supplier<T> resultSupplier,
+        Check.Builder<T>... tests) {
+        Check<T>[] args = Arrays.stream(tests).map(Check.Builder<T>::build).toArray(Check[]::new);
+        return waitUntilAsync(acceptable, resultSupplier, args);
+    }
+
     public static <T> T waitUntil(
         Duration acceptable,
         Supplier<T> resultSupplier) {
@@ -196,6 +406,146 @@ public class Utils {
             .predicate(Objects::nonNull).build());
     }
 
+    /**
+     * Blocks until the given future (e.g. from {@link #waitUntilAsync(Duration, Supplier, Check[])}) is done, and returns its result, or throws what it failed with.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch (ExecutionException ee) {
+            throw rethrow(ee.getCause());
+        }
+    }
+
+    /**
+     * Blocks until all given futures are done. If some of them failed, the first failure is thrown, with the others {@link Throwable#addSuppressed(Throwable) suppressed}.
+     */
+    public static void awaitAll(CompletableFuture<?>... futures) {
+        try {
+            CompletableFuture.allOf(futures).exceptionally(t -> null).get();
+        } catch (InterruptedException ie) {
+            Arrays.stream(futures).forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch (ExecutionException ee) {
+            // cannot happen, handled by exceptionally
+            throw rethrow(ee.getCause());
+        }
+        Throwable first = null;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (first == null) {
+                    first = cause;
+                } else {
+                    first.addSuppressed(cause);
+                }
+            }
+        }
+        if (first != null) {
+            throw rethrow(first);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        return new RuntimeException(t);
+    }
+
+    /**
+     * Evaluates a number of {@link Check}s on the result of a supplier, and keeps track of the last result and which checks are satisfied.
+     */
+    private static class Checks<T> implements Callable<Boolean> {
+        private final Supplier<T> resultSupplier;
+        private final Check<T>[] tests;
+        private volatile T result;
+        @Getter
+        private volatile String description;
+
+        private Checks(Supplier<T> resultSupplier, Check<T>[] tests) {
+            this.resultSupplier = resultSupplier;
+            this.tests = tests;
+            this.description = Arrays.stream(tests).map(t -> t.description).collect(Collectors.joining(" AND "));
+        }
+
+        Supplier<? extends Future<?>> getWakeUp() {
+            return Arrays.stream(tests)
+                .map(Check::getWakeUp)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null);
+        }
+
+        /**
+         * The first explicit {@link Check#getCategory() category}, or otherwise the {@link #defaultCategory() default one}.
+         */
+        String getCategory() {
+            return Arrays.stream(tests)
+                .map(Check::getCategory)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElseGet(Utils::defaultCategory);
+        }
+
+        /**
+         * The first explicit {@link Check#getBackoff() backoff}, or otherwise one {@link ArrivalModel#backoff(String, Backoff) learned} from earlier waits in the same category.
+         */
+        Backoff getBackoff() {
+            return Arrays.stream(tests)
+                .map(Check::getBackoff)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElseGet(() -> ArrivalModel.getInstance().backoff(getCategory(), getWakeUp() == null ? defaultBackoff : WAKE_UP_FALLBACK));
+        }
+
+        @Override
+        public Boolean call() {
+            result = resultSupplier.get();
+            if (result == null) {
+                return false;
+            }
+            boolean success = true;
+            StringBuilder builder = new StringBuilder();
+            for (Check<T> t : tests) {
+                boolean test = t.predicate.test(result);
+                success &= test;
+                if (builder.length() > 0) {
+                    builder.append(" AND ");
+                }
+                builder.append(test ? TextUtil.strikeThrough(t.description) : t.description);
+
+            }
+            description = builder.toString();
+            return success;
+        }
+
+        /**
+         * Asserts the checks on the last result once more, and returns it.
+         */
+        T verify() {
+            assertThat(result).withFailMessage(description + ":" + resultSupplier + "supplied null").isNotNull();
+            for (Check<T> t : tests) {
+                assertThat(t.predicate.test(result)).withFailMessage(t.failureDescription.apply(result)).isTrue();
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.asList(tests) + " supplies: " + resultSupplier + " current value: " + result;
+        }
+    }
 
 
     @Getter
@@ -204,12 +554,34 @@ public class Utils {
         private final Predicate<T> predicate;
         private final Function<T, String> failureDescription;
         private final Supplier<T> supplier;
+        /**
+         * Overrides the {@link Utils#getDefaultBackoff() default backoff} for the wait this check is used in.
+         */
+        private final Backoff backoff;
+        /**
+         * Produces a signal which completes when it makes sense to evaluate again (e.g. {@link ChangeFeedAwaiter#wakeUpOn(String)}). Polling then only happens as a fall back.
+         */
+        private final Supplier<? extends Future<?>> wakeUp;
+        /**
+         * Under which name the duration of the wait is recorded in the {@link WaitStatistics}. E.g. "media publication". If not set, {@link Utils#CATEGORY} or the class of the current test is used.
+         */
+        private final String category;
 
         @lombok.Builder(builderClassName = "Builder")
-        private Check(String description, Predicate<T> predicate, Function<T, String> failureDescription, Supplier<T> supplier) {
+        private Check(
+            String description,
+            Predicate<T> predicate,
+            Function<T, String> failureDescription,
+            Supplier<T> supplier,
+            Backoff backoff,
+            Supplier<? extends Future<?>> wakeUp,
+            String category) {
             this.description = description;
             this.predicate = predicate;
             this.supplier = supplier;
+            this.backoff = backoff;
+            this.wakeUp = wakeUp;
+            this.category = category;
             this.failureDescription = failureDescription == null ? (t) -> description + ":" + t + " doesn't match" : failureDescription;
         }
 
@@ -220,4 +592,3 @@ public class Utils {
     }
 
 }
-
@@ -0,0 +1,132 @@
+package nl.vpro.testutils;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Collects how long the {@link Utils#waitUntil(Duration, java.util.function.Supplier, Utils.Check[]) waits} took until they succeeded, per {@link Utils.Check#getCategory() category}. This is e.g. a measure of how long it takes for changes to be published.
+ *
+ * The percentiles are {@link #report() reported} at the end of the run (see {@link nl.vpro.junit.extensions.WaitStatisticsListener}).
+ *
+ * @author Michiel Meeuwissen
+ * @since 1.1
+ */
+@Log4j2
+public class WaitStatistics {
+
+    /**
+     * Where the report is written. Defaults to {@code target/functional-tests}.
+     */
+    public static final String REPORT_DIR_PROPERTY = "functional-tests.report.dir";
+
+    private static final long HIGHEST_TRACKABLE_MILLIS = Duration.ofHours(2).toMillis();
+
+    private static final Map<String, Category> CATEGORIES = new ConcurrentSkipListMap<>();
+
+    private WaitStatistics() {
+    }
+
+    public static void recordSuccess(String category, Duration duration) {
+        get(category).record(duration);
+    }
+
+    public static void recordTimeout(String category, Duration duration) {
+        get(category).timeouts.incrementAndGet();
+        log.debug("{} timed out after {}", category, duration);
+    }
+
+    /**
+     * @return A copy of the histogram of (milliseconds) durations of successful waits in the given category, or {@code null} if nothing was recorded.
+     */
+    public static Histogram getHistogram(String category) {
+        Category c = CATEGORIES.get(category);
+        return c == null ? null : c.histogram.copy();
+    }
+
+    public static Map<String, Histogram> getHistograms() {
+        Map<String, Histogram> result = new TreeMap<>();
+        CATEGORIES.forEach((k, v) -> result.put(k, v.histogram.copy()));
+        return result;
+    }
+
+    public static Path getReportDirectory() {
+        return Paths.get(System.getProperty(REPORT_DIR_PROPERTY, "target/functional-tests"));
+    }
+
+    /**
+     * Logs the percentiles of all categories, and writes them to {@code wait-statistics.txt} in the {@link #getReportDirectory() report directory}.
+     */
+    public static void report() {
+        if (CATEGORIES.isEmpty()) {
+            log.debug("No waits recorded");
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-60s %6s %8s %9s %9s %9s %9s %9s%n", "category", "count", "timeouts", "p10", "p50", "p90", "p99", "max"));
+        CATEGORIES.forEach((name, c) -> {
+            Histogram h = c.histogram.copy();
+            builder.append(String.format("%-60s %6d %8d %9s %9s %9s %9s %9s%n",
+                name,
+                h.getTotalCount(),
+                c.timeouts.get(),
+                seconds(h, 10),
+                seconds(h, 50),
+                seconds(h, 90),
+                seconds(h, 99),
+                seconds(h, 100)
+            ));
+        });
+        log.info("Time until waits succeeded (seconds):\n{}", builder);
+        Path file = getReportDirectory().resolve("wait-statistics.txt");
+        try {
+            Files.createDirectories(file.getParent());
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                writer.print(builder);
+            }
+            log.info("Wrote {}", file.toAbsolutePath());
+        } catch (IOException ioe) {
+            log.warn("Could not write {}: {}", file, ioe.getMessage());
+        }
+    }
+
+    /**
+     * Forgets everything recorded until now.
+     */
+    public static void reset() {
+        CATEGORIES.clear();
+    }
+
+    private static String seconds(Histogram h, double percentile) {
+        if (h.getTotalCount() == 0) {
+            return "-";
+        }
+        return String.format("%.1f", h.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    private static Category get(String category) {
+        return CATEGORIES.computeIfAbsent(category == null ? "<unknown>" : category, k -> new Category());
+    }
+
+    private static class Category {
+        final Histogram histogram = new ConcurrentHistogram(1, HIGHEST_TRACKABLE_MILLIS, 3);
+        final AtomicLong timeouts = new AtomicLong();
+
+        void record(Duration duration) {
+            histogram.recordValue(Math.max(1, Math.min(HIGHEST_TRACKABLE_MILLIS, duration.toMillis())));
+        }
+    }
+}